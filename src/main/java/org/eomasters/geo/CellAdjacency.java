@@ -0,0 +1,177 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A precomputed table of the neighbors of each cell of a {@link GlobalGrid}. The table is indexed by the dense cell
+ * index and stored in a compressed row layout, so that looking up the neighbors of a cell neither computes nor
+ * allocates anything.
+ * <p>
+ * The neighborhood of a cell always includes the cell itself. The neighbors are ordered from the upper left corner to
+ * the lower right corner. At the anti-meridian the neighborhood wraps around and at the grid bounds it is clipped, in
+ * which case duplicates are omitted and a cell has fewer neighbors.
+ * </p>
+ * <p>
+ * The table reflects the grid bounds at the time of its creation.
+ * </p>
+ */
+public class CellAdjacency {
+
+  private final int[] offsets;
+  private final int[] neighbors;
+
+  private CellAdjacency(int[] offsets, int[] neighbors) {
+    this.offsets = offsets;
+    this.neighbors = neighbors;
+  }
+
+  /**
+   * Creates the table for the 4-neighborhood, which consists of the cell and the cells to the north, west, east and
+   * south.
+   *
+   * @param grid the grid
+   * @return the adjacency table
+   */
+  public static CellAdjacency create4Neighborhood(GlobalGrid grid) {
+    return create(grid, new int[]{-1, 0, 0, -1, 0, 0, 0, 1, 1, 0});
+  }
+
+  /**
+   * Creates the table for the 8-neighborhood, which consists of the cell and the 8 cells surrounding it. The neighbors
+   * are the same as provided by {@link GlobalGrid#getSurroundingCellIndices(int, int[])}.
+   *
+   * @param grid the grid
+   * @return the adjacency table
+   */
+  public static CellAdjacency create8Neighborhood(GlobalGrid grid) {
+    return createForRadius(grid, 1);
+  }
+
+  /**
+   * Creates the table for a square neighborhood which extends the given number of cells in each direction.
+   *
+   * @param grid   the grid
+   * @param radius the number of cells in each direction, 1 corresponds to the 8-neighborhood
+   * @return the adjacency table
+   * @throws IllegalArgumentException if the radius is negative
+   */
+  public static CellAdjacency createForRadius(GlobalGrid grid, int radius) {
+    if (radius < 0) {
+      throw new IllegalArgumentException("Radius must not be negative");
+    }
+    int size = 2 * radius + 1;
+    int[] window = new int[size * size * 2];
+    for (int i = 0; i < size * size; i++) {
+      window[2 * i] = i / size - radius;
+      window[2 * i + 1] = i % size - radius;
+    }
+    return create(grid, window);
+  }
+
+  /**
+   * Creates the table for a custom neighborhood. The neighborhood is given as pairs of row and column offsets relative
+   * to the cell, ordered as the neighbors shall be provided. Positive row offsets point to the south, positive column
+   * offsets to the east.
+   *
+   * @param grid   the grid
+   * @param window the row and column offset pairs
+   * @return the adjacency table
+   * @throws IllegalArgumentException if the window does not consist of pairs
+   */
+  public static CellAdjacency create(GlobalGrid grid, int[] window) {
+    if (window.length % 2 != 0) {
+      throw new IllegalArgumentException("Window must consist of row and column offset pairs");
+    }
+    int numCols = grid.getColumnCount();
+    int maxRow = grid.getRowCount() - 1;
+    int cellCount = grid.getCellCount();
+    int[] offsets = new int[cellCount + 1];
+    int[] neighbors = new int[cellCount * (window.length / 2)];
+    // marks the neighbors already added for the current cell
+    int[] addedFor = new int[cellCount];
+    Arrays.fill(addedFor, -1);
+    int count = 0;
+    for (int cellIndex = 0; cellIndex < cellCount; cellIndex++) {
+      int row = cellIndex / numCols;
+      int col = cellIndex % numCols;
+      offsets[cellIndex] = count;
+      for (int i = 0; i < window.length; i += 2) {
+        int neighborRow = Math.min(Math.max(row + window[i], 0), maxRow);
+        int neighborCol = Math.floorMod(col + window[i + 1], numCols);
+        int neighbor = neighborRow * numCols + neighborCol;
+        if (addedFor[neighbor] != cellIndex) {
+          addedFor[neighbor] = cellIndex;
+          neighbors[count++] = neighbor;
+        }
+      }
+    }
+    offsets[cellCount] = count;
+    return new CellAdjacency(offsets, count < neighbors.length ? Arrays.copyOf(neighbors, count) : neighbors);
+  }
+
+  /**
+   * Returns the number of neighbors of the given cell, including the cell itself.
+   *
+   * @param cellIndex the dense cell index
+   * @return the number of neighbors
+   */
+  public int getNeighborCount(int cellIndex) {
+    return offsets[cellIndex + 1] - offsets[cellIndex];
+  }
+
+  /**
+   * Returns the dense cell index of the i-th neighbor of the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @param i         the position of the neighbor, less than {@link #getNeighborCount(int)}
+   * @return the dense cell index of the neighbor
+   */
+  public int getNeighbor(int cellIndex, int i) {
+    return neighbors[offsets[cellIndex] + i];
+  }
+
+  /**
+   * Copies the dense cell indices of the neighbors of the given cell into the provided array.
+   *
+   * @param cellIndex the dense cell index
+   * @param result    the array receiving the indices, must be large enough for all neighbors
+   * @return the number of indices written to the array
+   */
+  public int getNeighbors(int cellIndex, int[] result) {
+    int start = offsets[cellIndex];
+    int count = offsets[cellIndex + 1] - start;
+    System.arraycopy(neighbors, start, result, 0, count);
+    return count;
+  }
+
+  /**
+   * Provides the dense cell indices of the neighbors of the given cell to the consumer.
+   *
+   * @param cellIndex the dense cell index
+   * @param consumer  the consumer receiving the dense cell indices
+   */
+  public void forEachNeighbor(int cellIndex, IntConsumer consumer) {
+    for (int i = offsets[cellIndex]; i < offsets[cellIndex + 1]; i++) {
+      consumer.accept(neighbors[i]);
+    }
+  }
+}
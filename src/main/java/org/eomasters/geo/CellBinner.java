@@ -0,0 +1,183 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2026 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Bins (lon, lat, value) observations into the cells of a {@link GlobalGrid} and computes count, sum, minimum, maximum,
+ * mean and optionally a histogram per cell.
+ * <p>
+ * The binner can be fed concurrently by many threads. Each thread accumulates into its own {@link CellStatistics},
+ * so no locking is needed while adding values. The statistics of a thread stay attached to it as long as the binner is
+ * in use. {@link #addParallel(double[], double[], double[])} accumulates per worker of the pool instead and merges
+ * the result of each call into a single shared statistics object, so neither the threads of the pool keep statistics
+ * nor does the memory grow with the number of calls. The partial statistics are merged by {@link #getStatistics()},
+ * which should be called after all threads have finished adding values.
+ * </p>
+ */
+public class CellBinner {
+
+  private static final int CHUNK_SIZE = 16384;
+
+  private final GlobalGrid grid;
+  private final Queue<CellStatistics> partials = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<CellStatistics> localStatistics = ThreadLocal.withInitial(this::createPartial);
+  private CellStatistics parallelStatistics;
+  private int binCount;
+  private double histogramMin;
+  private double histogramMax;
+
+  /**
+   * Creates a binner for the given grid. The grid bounds at the time of creation are used.
+   *
+   * @param grid the grid
+   */
+  public CellBinner(GlobalGrid grid) {
+    this.grid = grid.toImmutable();
+  }
+
+  /**
+   * Enables the computation of a histogram per cell. The range from the minimum to the maximum value is divided into
+   * bins of equal width. The maximum value is included in the last bin; values outside the range are not counted.
+   *
+   * @param min      the minimum value of the histogram
+   * @param max      the maximum value of the histogram
+   * @param binCount the number of bins
+   * @return this binner
+   * @throws IllegalArgumentException if the range is empty or the bin count is smaller than 1
+   * @throws IllegalStateException    if values have already been added
+   */
+  public CellBinner withHistogram(double min, double max, int binCount) {
+    if (!(max > min) || binCount < 1) {
+      throw new IllegalArgumentException(
+          String.format("Invalid histogram range [%s, %s] or bin count %d", min, max, binCount));
+    }
+    if (!partials.isEmpty() || getParallelStatistics() != null) {
+      throw new IllegalStateException("Histogram must be configured before values are added");
+    }
+    this.histogramMin = min;
+    this.histogramMax = max;
+    this.binCount = binCount;
+    return this;
+  }
+
+  /**
+   * Adds a single observation. Observations outside the grid bounds and NaN values are counted as rejected.
+   *
+   * @param lon   the longitude
+   * @param lat   the latitude
+   * @param value the observed value
+   */
+  public void add(double lon, double lat, double value) {
+    localStatistics.get().add(grid.findCellIndex(lon, lat), value);
+  }
+
+  /**
+   * Adds the observations of the given arrays by the calling thread.
+   *
+   * @param lons   the longitudes
+   * @param lats   the latitudes
+   * @param values the observed values
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   */
+  public void add(double[] lons, double[] lats, double[] values) {
+    ensureSameLength(lons, lats, values);
+    addRange(localStatistics.get(), lons, lats, values, 0, values.length);
+  }
+
+  /**
+   * Adds the observations of the given arrays in parallel, using the common fork-join pool. The arrays are split into
+   * one range per worker of the pool, and the statistics of each range are merged into the shared statistics of the
+   * parallel calls.
+   *
+   * @param lons   the longitudes
+   * @param lats   the latitudes
+   * @param values the observed values
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   */
+  public void addParallel(double[] lons, double[] lats, double[] values) {
+    ensureSameLength(lons, lats, values);
+    // each range allocates statistics for the whole grid, so there are not more ranges than workers
+    int rangeCount = Math.min(ForkJoinPool.getCommonPoolParallelism(), (values.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    IntStream.range(0, rangeCount).parallel().forEach(range -> {
+      CellStatistics statistics = newStatistics();
+      int start = (int) ((long) values.length * range / rangeCount);
+      int end = (int) ((long) values.length * (range + 1) / rangeCount);
+      addRange(statistics, lons, lats, values, start, end);
+      mergeParallel(statistics);
+    });
+  }
+
+  /**
+   * Merges the values added by all threads into a new statistics object.
+   *
+   * @return the merged statistics
+   */
+  public CellStatistics getStatistics() {
+    CellStatistics result = newStatistics();
+    for (CellStatistics partial : partials) {
+      result.merge(partial);
+    }
+    synchronized (this) {
+      if (parallelStatistics != null) {
+        result.merge(parallelStatistics);
+      }
+    }
+    return result;
+  }
+
+  private synchronized CellStatistics getParallelStatistics() {
+    return parallelStatistics;
+  }
+
+  private synchronized void mergeParallel(CellStatistics statistics) {
+    if (parallelStatistics == null) {
+      parallelStatistics = statistics;
+    } else {
+      parallelStatistics.merge(statistics);
+    }
+  }
+
+  private void addRange(CellStatistics statistics, double[] lons, double[] lats, double[] values, int start,
+      int end) {
+    for (int i = start; i < end; i++) {
+      statistics.add(grid.findCellIndex(lons[i], lats[i]), values[i]);
+    }
+  }
+
+  private CellStatistics createPartial() {
+    CellStatistics partial = newStatistics();
+    partials.add(partial);
+    return partial;
+  }
+
+  private CellStatistics newStatistics() {
+    return new CellStatistics(grid, binCount, histogramMin, histogramMax);
+  }
+
+  private static void ensureSameLength(double[] lons, double[] lats, double[] values) {
+    if (lons.length != lats.length || lons.length != values.length) {
+      throw new IllegalArgumentException("Longitude, latitude and value arrays must be of the same length");
+    }
+  }
+}
@@ -0,0 +1,353 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caches values per cell of a {@link GlobalGrid}, e.g. auxiliary data like a DEM or a land mask. Missing values are
+ * loaded by a user supplied loader; concurrent requests for the same cell wait for a single load. The least recently
+ * used values are evicted when the total weight of the cached values exceeds the budget. The weight is usually the
+ * size of a value in bytes.
+ * <p>
+ * If a prefetch executor is set, a miss additionally loads the surrounding cells in the background, as they are
+ * likely to be requested next. Hit, miss, load and eviction counters help to size the cache.
+ * </p>
+ *
+ * @param <V> the type of the cached values
+ */
+public class CellCache<V> {
+
+  /**
+   * Loads the value of a cell.
+   *
+   * @param <V> the type of the value
+   */
+  @FunctionalInterface
+  public interface Loader<V> {
+
+    /**
+     * Loads the value of the cell with the given dense cell index.
+     *
+     * @param cellIndex the dense cell index
+     * @return the value, null values are not cached
+     * @throws IOException if the value cannot be loaded
+     */
+    V load(int cellIndex) throws IOException;
+  }
+
+  private final GlobalGrid grid;
+  private final long budget;
+  private final ToLongFunction<V> weigher;
+  private final Loader<V> loader;
+  private final LinkedHashMap<Integer, CachedValue<V>> values = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Integer, CompletableFuture<V>> loading = new HashMap<>();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong loadCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private long weight;
+  private Executor prefetchExecutor;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param grid    the grid of the cells
+   * @param budget  the maximum total weight of the cached values
+   * @param weigher computes the weight of a value, usually its size in bytes
+   * @param loader  loads the value of a cell
+   */
+  public CellCache(GlobalGrid grid, long budget, ToLongFunction<V> weigher, Loader<V> loader) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget must not be negative");
+    }
+    this.grid = grid.toImmutable();
+    this.budget = budget;
+    this.weigher = weigher;
+    this.loader = loader;
+  }
+
+  /**
+   * Enables prefetching of the surrounding cells on a miss. The cells are loaded by the given executor.
+   *
+   * @param executor the executor loading the surrounding cells, or null to disable prefetching
+   * @return this cache
+   */
+  public CellCache<V> withPrefetchExecutor(Executor executor) {
+    this.prefetchExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Returns the value of the given cell, loading it if it is not cached.
+   *
+   * @param cellIndex the dense cell index
+   * @return the value
+   * @throws IOException if the value cannot be loaded
+   */
+  public V get(int cellIndex) throws IOException {
+    CompletableFuture<V> future;
+    boolean loadHere;
+    synchronized (this) {
+      CachedValue<V> cached = values.get(cellIndex);
+      if (cached != null) {
+        hitCount.incrementAndGet();
+        return cached.value;
+      }
+      missCount.incrementAndGet();
+      future = loading.get(cellIndex);
+      loadHere = future == null;
+      if (loadHere) {
+        future = new CompletableFuture<>();
+        loading.put(cellIndex, future);
+      }
+    }
+    if (loadHere) {
+      V value = load(cellIndex, future);
+      prefetchSurrounding(cellIndex);
+      return value;
+    }
+    return await(future);
+  }
+
+  /**
+   * Returns the value of the given cell if it is cached. The value is not loaded and the counters are not changed.
+   *
+   * @param cellIndex the dense cell index
+   * @return the value, or null if it is not cached
+   */
+  public synchronized V getIfPresent(int cellIndex) {
+    CachedValue<V> cached = values.get(cellIndex);
+    return cached != null ? cached.value : null;
+  }
+
+  /**
+   * Loads the values of the cells surrounding the given cell in the background, if a prefetch executor is set. Values
+   * already cached or being loaded are skipped.
+   *
+   * @param cellIndex the dense cell index
+   * @see GlobalGrid#getSurroundingCellIndices(int, int[])
+   */
+  public void prefetchSurrounding(int cellIndex) {
+    Executor executor = prefetchExecutor;
+    if (executor == null) {
+      return;
+    }
+    int[] neighbors = new int[9];
+    int count = grid.getSurroundingCellIndices(cellIndex, neighbors);
+    for (int i = 0; i < count; i++) {
+      int neighbor = neighbors[i];
+      if (neighbor == cellIndex) {
+        continue;
+      }
+      CompletableFuture<V> future;
+      synchronized (this) {
+        if (values.containsKey(neighbor) || loading.containsKey(neighbor)) {
+          continue;
+        }
+        future = new CompletableFuture<>();
+        loading.put(neighbor, future);
+      }
+      CompletableFuture<V> prefetch = future;
+      try {
+        executor.execute(() -> {
+          try {
+            load(neighbor, prefetch);
+          } catch (IOException | RuntimeException e) {
+            // a failed prefetch is retried on the next request of the cell
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        synchronized (this) {
+          loading.remove(neighbor, prefetch);
+        }
+        prefetch.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * Removes the value of the given cell from the cache. A load of the cell in progress is not cached when it finishes;
+   * the next request loads the value again.
+   *
+   * @param cellIndex the dense cell index
+   */
+  public synchronized void invalidate(int cellIndex) {
+    loading.remove(cellIndex);
+    CachedValue<V> removed = values.remove(cellIndex);
+    if (removed != null) {
+      weight -= removed.weight;
+    }
+  }
+
+  /**
+   * Removes all values from the cache. Loads in progress are not cached when they finish. The counters are not reset.
+   */
+  public synchronized void clear() {
+    loading.clear();
+    values.clear();
+    weight = 0;
+  }
+
+  /**
+   * Returns the number of cached values.
+   *
+   * @return the number of values
+   */
+  public synchronized int size() {
+    return values.size();
+  }
+
+  /**
+   * Returns the total weight of the cached values.
+   *
+   * @return the weight
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  /**
+   * Returns the maximum total weight of the cached values.
+   *
+   * @return the budget
+   */
+  public long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Returns the number of requests answered from the cache.
+   *
+   * @return the number of hits
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Returns the number of requests not answered from the cache, including requests waiting for a load in progress.
+   *
+   * @return the number of misses
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Returns the number of values loaded, including prefetched values.
+   *
+   * @return the number of loads
+   */
+  public long getLoadCount() {
+    return loadCount.get();
+  }
+
+  /**
+   * Returns the number of values evicted because the budget was exceeded.
+   *
+   * @return the number of evictions
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  private V load(int cellIndex, CompletableFuture<V> future) throws IOException {
+    try {
+      loadCount.incrementAndGet();
+      V value = loader.load(cellIndex);
+      synchronized (this) {
+        // if the cell has been invalidated during the load, the future is no longer registered and the value is stale
+        if (loading.remove(cellIndex, future) && value != null) {
+          put(cellIndex, value);
+        }
+      }
+      future.complete(value);
+      return value;
+    } catch (Throwable t) {
+      // also on errors, otherwise all requests of the cell would wait forever
+      synchronized (this) {
+        loading.remove(cellIndex, future);
+      }
+      future.completeExceptionally(t);
+      throw t;
+    }
+  }
+
+  private void put(int cellIndex, V value) {
+    long valueWeight = weigher.applyAsLong(value);
+    if (valueWeight > budget) {
+      return;
+    }
+    CachedValue<V> previous = values.put(cellIndex, new CachedValue<>(value, valueWeight));
+    if (previous != null) {
+      weight -= previous.weight;
+    }
+    weight += valueWeight;
+    Iterator<CachedValue<V>> iterator = values.values().iterator();
+    while (weight > budget && iterator.hasNext()) {
+      CachedValue<V> eldest = iterator.next();
+      iterator.remove();
+      weight -= eldest.weight;
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  private static <V> V await(CompletableFuture<V> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the value", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw new IOException(cause.getMessage(), cause);
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private static final class CachedValue<V> {
+
+    private final V value;
+    private final long weight;
+
+    private CachedValue(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
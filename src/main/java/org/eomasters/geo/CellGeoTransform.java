@@ -0,0 +1,226 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.awt.geom.AffineTransform;
+
+/**
+ * The affine transformation between the pixel coordinates of a cell raster and longitude and latitude. The
+ * transformation follows the pixel convention of {@link GlobalGrid#locate(double, double, CellPixel)}: the center of
+ * the pixel (i, j) is located at <code>(x0 + i * pixelSize, y0 - j * pixelSize)</code>, where (x0, y0) is the upper
+ * left corner of the cell. So the integer pixel containing a continuous pixel coordinate x is
+ * <code>floor(x + 0.5)</code>.
+ * <p>
+ * Instances are immutable and cached per cell by {@link GlobalGrid#getGeoTransform(int)}.
+ * </p>
+ */
+public final class CellGeoTransform {
+
+  private final int cellIndex;
+  private final double x0;
+  private final double y0;
+  private final double pixelSize;
+  private final int rasterWidth;
+  private final int rasterHeight;
+
+  CellGeoTransform(int cellIndex, double x0, double y0, double pixelSize, int rasterWidth, int rasterHeight) {
+    this.cellIndex = cellIndex;
+    this.x0 = x0;
+    this.y0 = y0;
+    this.pixelSize = pixelSize;
+    this.rasterWidth = rasterWidth;
+    this.rasterHeight = rasterHeight;
+  }
+
+  /**
+   * Returns the dense index of the cell.
+   *
+   * @return the dense cell index
+   */
+  public int getCellIndex() {
+    return cellIndex;
+  }
+
+  /**
+   * Returns the longitude of the upper left corner of the cell, which is the center of the first pixel.
+   *
+   * @return the longitude
+   */
+  public double getUpperLeftLon() {
+    return x0;
+  }
+
+  /**
+   * Returns the latitude of the upper left corner of the cell, which is the center of the first pixel.
+   *
+   * @return the latitude
+   */
+  public double getUpperLeftLat() {
+    return y0;
+  }
+
+  /**
+   * Returns the size of a pixel in degrees.
+   *
+   * @return the pixel size
+   */
+  public double getPixelSize() {
+    return pixelSize;
+  }
+
+  /**
+   * Returns the width of the cell raster.
+   *
+   * @return the raster width
+   * @see GlobalGrid#getCellRasterWidth()
+   */
+  public int getRasterWidth() {
+    return rasterWidth;
+  }
+
+  /**
+   * Returns the height of the cell raster.
+   *
+   * @return the raster height
+   * @see GlobalGrid#getCellRasterHeight()
+   */
+  public int getRasterHeight() {
+    return rasterHeight;
+  }
+
+  /**
+   * Converts a pixel x coordinate into a longitude. The longitude is not normalized, pixels right of the
+   * anti-meridian have longitudes greater than 180.
+   *
+   * @param pixelX the pixel x coordinate
+   * @return the longitude
+   */
+  public double pixelToLon(double pixelX) {
+    return x0 + pixelX * pixelSize;
+  }
+
+  /**
+   * Converts a pixel y coordinate into a latitude.
+   *
+   * @param pixelY the pixel y coordinate
+   * @return the latitude
+   */
+  public double pixelToLat(double pixelY) {
+    return y0 - pixelY * pixelSize;
+  }
+
+  /**
+   * Converts a longitude into a pixel x coordinate. The longitude is taken relative to the cell, so that longitudes
+   * across the anti-meridian result in the pixel coordinates of the nearby columns.
+   *
+   * @param lon the longitude
+   * @return the pixel x coordinate
+   */
+  public double lonToPixel(double lon) {
+    return GeoUtils.wrapDelta(lon - x0) / pixelSize;
+  }
+
+  /**
+   * Converts a latitude into a pixel y coordinate.
+   *
+   * @param lat the latitude
+   * @return the pixel y coordinate
+   */
+  public double latToPixel(double lat) {
+    return (y0 - lat) / pixelSize;
+  }
+
+  /**
+   * Converts pixel coordinates into longitudes and latitudes. The source and target arrays may be the same.
+   *
+   * @param pixelXs the pixel x coordinates
+   * @param pixelYs the pixel y coordinates
+   * @param lons    the array receiving the longitudes
+   * @param lats    the array receiving the latitudes
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   * @see #pixelToLon(double)
+   * @see #pixelToLat(double)
+   */
+  public void pixelToGeo(double[] pixelXs, double[] pixelYs, double[] lons, double[] lats) {
+    ensureSameLength(pixelXs.length, pixelYs.length, lons.length, lats.length);
+    for (int i = 0; i < pixelXs.length; i++) {
+      lons[i] = x0 + pixelXs[i] * pixelSize;
+      lats[i] = y0 - pixelYs[i] * pixelSize;
+    }
+  }
+
+  /**
+   * Converts longitudes and latitudes into pixel coordinates. The source and target arrays may be the same.
+   *
+   * @param lons    the longitudes
+   * @param lats    the latitudes
+   * @param pixelXs the array receiving the pixel x coordinates
+   * @param pixelYs the array receiving the pixel y coordinates
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   * @see #lonToPixel(double)
+   * @see #latToPixel(double)
+   */
+  public void geoToPixel(double[] lons, double[] lats, double[] pixelXs, double[] pixelYs) {
+    ensureSameLength(lons.length, lats.length, pixelXs.length, pixelYs.length);
+    for (int i = 0; i < lons.length; i++) {
+      pixelXs[i] = lonToPixel(lons[i]);
+      pixelYs[i] = latToPixel(lats[i]);
+    }
+  }
+
+  /**
+   * Converts longitudes and latitudes into the linear offsets of the containing pixels in a row-major buffer of the
+   * cell raster. For coordinates outside the cell raster -1 is written.
+   *
+   * @param lons         the longitudes
+   * @param lats         the latitudes
+   * @param pixelOffsets the array receiving the pixel offsets
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   */
+  public void geoToPixelOffset(double[] lons, double[] lats, int[] pixelOffsets) {
+    ensureSameLength(lons.length, lats.length, pixelOffsets.length, pixelOffsets.length);
+    for (int i = 0; i < lons.length; i++) {
+      int pixelX = (int) Math.floor(lonToPixel(lons[i]) + 0.5);
+      int pixelY = (int) Math.floor(latToPixel(lats[i]) + 0.5);
+      boolean inRaster = pixelX >= 0 && pixelX < rasterWidth && pixelY >= 0 && pixelY < rasterHeight;
+      pixelOffsets[i] = inRaster ? pixelY * rasterWidth + pixelX : -1;
+    }
+  }
+
+  /**
+   * Creates an affine transform from pixel coordinates to longitude and latitude, for use with Java2D or other
+   * libraries.
+   *
+   * @return a new affine transform
+   */
+  public AffineTransform toAffineTransform() {
+    return new AffineTransform(pixelSize, 0, 0, -pixelSize, x0, y0);
+  }
+
+  private static void ensureSameLength(int length1, int length2, int length3, int length4) {
+    if (length1 != length2 || length1 != length3 || length1 != length4) {
+      throw new IllegalArgumentException("All arrays must be of the same length");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CellGeoTransform{cellIndex=" + cellIndex + ", x0=" + x0 + ", y0=" + y0 + ", pixelSize=" + pixelSize + "}";
+  }
+}
@@ -0,0 +1,260 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * A concurrent map from the cells of a {@link GlobalGrid} to values. The values are stored in an array indexed by the
+ * dense cell index, so neither hashing nor boxing of keys is needed. All updates are lock-free compare-and-set
+ * operations on the slot of the cell.
+ * <p>
+ * As in {@link java.util.concurrent.atomic.AtomicReference#updateAndGet(UnaryOperator)}, the functions passed to
+ * {@link #compute(int, UnaryOperator)}, {@link #merge(int, Object, BinaryOperator)} and
+ * {@link #computeIfAbsent(int, IntFunction)} may be called more than once under contention and should therefore be
+ * free of side effects. Null values are not supported; a function returning null removes the value.
+ * </p>
+ *
+ * @param <V> the type of the values
+ */
+public class CellMap<V> {
+
+  private final GlobalGrid grid;
+  private final AtomicReferenceArray<V> values;
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * Creates an empty map for the cells of the given grid. The grid bounds at the time of creation are used.
+   *
+   * @param grid the grid
+   */
+  public CellMap(GlobalGrid grid) {
+    this.grid = grid.toImmutable();
+    this.values = new AtomicReferenceArray<>(this.grid.getCellCount());
+  }
+
+  /**
+   * Returns the grid of the map.
+   *
+   * @return the immutable grid
+   */
+  public GlobalGrid getGrid() {
+    return grid;
+  }
+
+  /**
+   * Returns the value of the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @return the value, or null if the cell has no value
+   */
+  public V get(int cellIndex) {
+    return values.get(cellIndex);
+  }
+
+  /**
+   * Checks whether the given cell has a value.
+   *
+   * @param cellIndex the dense cell index
+   * @return true if the cell has a value
+   */
+  public boolean containsCell(int cellIndex) {
+    return values.get(cellIndex) != null;
+  }
+
+  /**
+   * Sets the value of the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @param value     the value, not null
+   * @return the previous value, or null if the cell had no value
+   */
+  public V put(int cellIndex, V value) {
+    requireValue(value);
+    V previous = values.getAndSet(cellIndex, value);
+    if (previous == null) {
+      size.incrementAndGet();
+    }
+    return previous;
+  }
+
+  /**
+   * Sets the value of the given cell if it has no value yet.
+   *
+   * @param cellIndex the dense cell index
+   * @param value     the value, not null
+   * @return the current value, or null if the given value has been set
+   */
+  public V putIfAbsent(int cellIndex, V value) {
+    requireValue(value);
+    while (true) {
+      if (values.compareAndSet(cellIndex, null, value)) {
+        size.incrementAndGet();
+        return null;
+      }
+      // the value may have been removed in the meantime, in which case the cell is free again
+      V current = values.get(cellIndex);
+      if (current != null) {
+        return current;
+      }
+    }
+  }
+
+  /**
+   * Removes the value of the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @return the removed value, or null if the cell had no value
+   */
+  public V remove(int cellIndex) {
+    V previous = values.getAndSet(cellIndex, null);
+    if (previous != null) {
+      size.decrementAndGet();
+    }
+    return previous;
+  }
+
+  /**
+   * Computes the new value of the given cell from its current value.
+   *
+   * @param cellIndex the dense cell index
+   * @param remapping computes the new value from the current value, which is null if the cell has no value. Returning
+   *                  null removes the value.
+   * @return the new value, or null if the cell has no value anymore
+   */
+  public V compute(int cellIndex, UnaryOperator<V> remapping) {
+    while (true) {
+      V current = values.get(cellIndex);
+      V updated = remapping.apply(current);
+      if (current == null && updated == null) {
+        return null;
+      }
+      if (values.compareAndSet(cellIndex, current, updated)) {
+        updateSize(current, updated);
+        return updated;
+      }
+    }
+  }
+
+  /**
+   * Sets the given value if the cell has no value, otherwise combines the current value with the given value.
+   *
+   * @param cellIndex the dense cell index
+   * @param value     the value, not null
+   * @param merging   combines the current and the given value. Returning null removes the value.
+   * @return the new value, or null if the cell has no value anymore
+   */
+  public V merge(int cellIndex, V value, BinaryOperator<V> merging) {
+    requireValue(value);
+    return compute(cellIndex, current -> current == null ? value : merging.apply(current, value));
+  }
+
+  /**
+   * Returns the value of the given cell, creating it if the cell has no value yet. If several threads create a value
+   * concurrently only one of the values is set and returned to all of them.
+   *
+   * @param cellIndex the dense cell index
+   * @param factory   creates the value for the cell
+   * @return the current value
+   */
+  public V computeIfAbsent(int cellIndex, IntFunction<V> factory) {
+    V current = values.get(cellIndex);
+    if (current != null) {
+      return current;
+    }
+    V created = factory.apply(cellIndex);
+    if (created == null) {
+      return null;
+    }
+    V existing = putIfAbsent(cellIndex, created);
+    return existing != null ? existing : created;
+  }
+
+  /**
+   * Returns the number of cells having a value.
+   *
+   * @return the number of values
+   */
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Checks whether no cell has a value.
+   *
+   * @return true if the map is empty
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Removes all values. Values set concurrently may or may not be removed.
+   */
+  public void clear() {
+    for (int i = 0; i < values.length(); i++) {
+      remove(i);
+    }
+  }
+
+  /**
+   * Provides all values together with their dense cell index to the given consumer, in the order of the cell index.
+   * Concurrent updates may or may not be visible.
+   *
+   * @param consumer the consumer receiving the values
+   */
+  public void forEach(ObjIntConsumer<V> consumer) {
+    for (int i = 0; i < values.length(); i++) {
+      V value = values.get(i);
+      if (value != null) {
+        consumer.accept(value, i);
+      }
+    }
+  }
+
+  /**
+   * Returns the cells having a value.
+   *
+   * @return the set of cells
+   */
+  public CellSet getCells() {
+    CellSet cells = new CellSet(grid);
+    forEach((value, cellIndex) -> cells.add(cellIndex));
+    return cells;
+  }
+
+  private void updateSize(V previous, V updated) {
+    if (previous == null && updated != null) {
+      size.incrementAndGet();
+    } else if (previous != null && updated == null) {
+      size.decrementAndGet();
+    }
+  }
+
+  private static void requireValue(Object value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Value must not be null");
+    }
+  }
+}
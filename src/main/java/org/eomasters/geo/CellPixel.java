@@ -0,0 +1,85 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+/**
+ * The location of a pixel within the raster of a {@link GlobalGrid} cell. The raster of a cell starts with the pixel
+ * centered on the upper left corner of the cell, which matches the half-pixel rule of
+ * {@link GlobalGrid#getCellId(double, double)}.
+ * <p>
+ * Instances are mutable, so that a single instance can be reused when locating many pixels.
+ * </p>
+ *
+ * @see GlobalGrid#locate(double, double, CellPixel)
+ */
+public class CellPixel {
+
+  private int cellIndex = GlobalGrid.NO_CELL_INDEX;
+  private int pixelX;
+  private int pixelY;
+  private int offset;
+
+  void set(int cellIndex, int pixelX, int pixelY, int offset) {
+    this.cellIndex = cellIndex;
+    this.pixelX = pixelX;
+    this.pixelY = pixelY;
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the dense cell index of the cell containing the pixel.
+   *
+   * @return the dense cell index
+   */
+  public int getCellIndex() {
+    return cellIndex;
+  }
+
+  /**
+   * Returns the column of the pixel within the cell raster.
+   *
+   * @return the pixel column
+   */
+  public int getPixelX() {
+    return pixelX;
+  }
+
+  /**
+   * Returns the row of the pixel within the cell raster.
+   *
+   * @return the pixel row
+   */
+  public int getPixelY() {
+    return pixelY;
+  }
+
+  /**
+   * Returns the linear offset of the pixel in a row-major buffer of the cell raster.
+   *
+   * @return the linear offset
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  @Override
+  public String toString() {
+    return "CellPixel{cellIndex=" + cellIndex + ", pixelX=" + pixelX + ", pixelY=" + pixelY + "}";
+  }
+}
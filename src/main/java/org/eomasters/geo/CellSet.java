@@ -0,0 +1,338 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.geo;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A set of cells of a {@link GlobalGrid}. The cells are stored as a bitmap keyed by the dense cell index, so that the
+ * set operations work on whole 64-bit words instead of single cells.
+ * <p>
+ * Set operations are only allowed between sets of grids with the same layout, i.e. the same cell size and grid
+ * bounds. Two sets are equal if their grids have the same layout and they contain the same cells.
+ * </p>
+ */
+public class CellSet {
+
+  private final GlobalGrid grid;
+  private final BitSet bits;
+
+  /**
+   * Creates an empty cell set for the given grid. The grid bounds at the time of creation are used.
+   *
+   * @param grid the grid the cells belong to
+   */
+  public CellSet(GlobalGrid grid) {
+    this.grid = grid.toImmutable();
+    this.bits = new BitSet(this.grid.getCellCount());
+  }
+
+  private CellSet(GlobalGrid grid, BitSet bits) {
+    this.grid = grid;
+    this.bits = bits;
+  }
+
+  /**
+   * Creates a cell set containing the given dense cell indices.
+   *
+   * @param grid        the grid the cells belong to
+   * @param cellIndices the dense cell indices
+   * @return the new cell set
+   * @throws IllegalArgumentException if an index is not a valid cell index
+   */
+  public static CellSet of(GlobalGrid grid, int... cellIndices) {
+    CellSet cellSet = new CellSet(grid);
+    for (int cellIndex : cellIndices) {
+      cellSet.add(cellIndex);
+    }
+    return cellSet;
+  }
+
+  /**
+   * Creates a cell set from formatted cell identifiers.
+   *
+   * @param grid        the grid the cells belong to
+   * @param cellStrings the cell identifiers, as formatted by {@link GlobalGrid#formatCellId(Point)}
+   * @return the new cell set
+   * @throws IllegalArgumentException if a cell identifier cannot be parsed or is not within the grid bounds
+   */
+  public static CellSet fromCellIdStrings(GlobalGrid grid, Collection<String> cellStrings) {
+    CellSet cellSet = new CellSet(grid);
+    for (String cellString : cellStrings) {
+      if (cellString.length() != 7) {
+        throw new IllegalArgumentException("Cell identifier must be 7 characters long");
+      }
+      cellSet.bits.set(grid.parseCellIndex(cellString, 0));
+    }
+    return cellSet;
+  }
+
+  /**
+   * Returns the grid the cells belong to.
+   *
+   * @return the immutable grid
+   */
+  public GlobalGrid getGrid() {
+    return grid;
+  }
+
+  /**
+   * Adds the cell with the given dense cell index.
+   *
+   * @param cellIndex the dense cell index
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   */
+  public void add(int cellIndex) {
+    ensureValidIndex(cellIndex);
+    bits.set(cellIndex);
+  }
+
+  /**
+   * Adds the cell with the given identifier.
+   *
+   * @param cellId the cell identifier
+   * @throws IllegalArgumentException if the cell is not within the grid bounds
+   */
+  public void add(Point cellId) {
+    bits.set(grid.toCellIndex(cellId));
+  }
+
+  /**
+   * Removes the cell with the given dense cell index.
+   *
+   * @param cellIndex the dense cell index
+   */
+  public void remove(int cellIndex) {
+    if (cellIndex >= 0) {
+      bits.clear(cellIndex);
+    }
+  }
+
+  /**
+   * Checks whether the cell with the given dense cell index is contained in this set.
+   *
+   * @param cellIndex the dense cell index
+   * @return true if the cell is contained
+   */
+  public boolean contains(int cellIndex) {
+    return cellIndex >= 0 && bits.get(cellIndex);
+  }
+
+  /**
+   * Checks whether the cell with the given identifier is contained in this set.
+   *
+   * @param cellId the cell identifier
+   * @return true if the cell is contained
+   */
+  public boolean contains(Point cellId) {
+    return bits.get(grid.toCellIndex(cellId));
+  }
+
+  /**
+   * Adds all cells of the other set to this set (union).
+   *
+   * @param other the other set
+   * @return this set
+   * @throws IllegalArgumentException if the other set belongs to a grid with a different layout
+   */
+  public CellSet addAll(CellSet other) {
+    ensureCompatible(other);
+    bits.or(other.bits);
+    return this;
+  }
+
+  /**
+   * Retains only the cells which are also contained in the other set (intersection).
+   *
+   * @param other the other set
+   * @return this set
+   * @throws IllegalArgumentException if the other set belongs to a grid with a different layout
+   */
+  public CellSet retainAll(CellSet other) {
+    ensureCompatible(other);
+    bits.and(other.bits);
+    return this;
+  }
+
+  /**
+   * Removes all cells which are contained in the other set (difference).
+   *
+   * @param other the other set
+   * @return this set
+   * @throws IllegalArgumentException if the other set belongs to a grid with a different layout
+   */
+  public CellSet removeAll(CellSet other) {
+    ensureCompatible(other);
+    bits.andNot(other.bits);
+    return this;
+  }
+
+  /**
+   * Checks whether this set and the other set have at least one cell in common.
+   *
+   * @param other the other set
+   * @return true if both sets share a cell
+   * @throws IllegalArgumentException if the other set belongs to a grid with a different layout
+   */
+  public boolean intersects(CellSet other) {
+    ensureCompatible(other);
+    return bits.intersects(other.bits);
+  }
+
+  /**
+   * Returns the number of cells in this set.
+   *
+   * @return the number of cells
+   */
+  public int cardinality() {
+    return bits.cardinality();
+  }
+
+  /**
+   * Checks whether this set contains no cells.
+   *
+   * @return true if the set is empty
+   */
+  public boolean isEmpty() {
+    return bits.isEmpty();
+  }
+
+  /**
+   * Removes all cells from this set.
+   */
+  public void clear() {
+    bits.clear();
+  }
+
+  /**
+   * Creates a copy of this set.
+   *
+   * @return the copy
+   */
+  public CellSet copy() {
+    return new CellSet(grid, (BitSet) bits.clone());
+  }
+
+  /**
+   * Provides the dense cell indices of this set in ascending order to the given consumer.
+   *
+   * @param consumer the consumer receiving the dense cell indices
+   */
+  public void forEach(IntConsumer consumer) {
+    for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+      consumer.accept(i);
+    }
+  }
+
+  /**
+   * Returns the dense cell indices of this set as a stream in ascending order.
+   *
+   * @return a stream of dense cell indices
+   */
+  public IntStream stream() {
+    return bits.stream();
+  }
+
+  /**
+   * Returns the cell identifiers of this set as a stream in ascending order of the dense cell index.
+   *
+   * @return a stream of cell identifiers
+   */
+  public Stream<Point> cellIds() {
+    return stream().mapToObj(grid::toCellId);
+  }
+
+  /**
+   * Returns the dense cell indices of this set in ascending order.
+   *
+   * @return an array of dense cell indices
+   */
+  public int[] toArray() {
+    return stream().toArray();
+  }
+
+  /**
+   * Returns the formatted cell identifiers of this set in ascending order of the dense cell index.
+   *
+   * @return a list of formatted cell identifiers
+   * @see GlobalGrid#formatCellId(Point)
+   */
+  public List<String> toCellIdStrings() {
+    List<String> cellStrings = new ArrayList<>(cardinality());
+    forEach(cellIndex -> cellStrings.add(grid.getCellIdString(cellIndex)));
+    return cellStrings;
+  }
+
+  int nextCell(int fromIndex) {
+    return bits.nextSetBit(fromIndex);
+  }
+
+  int nextGap(int fromIndex) {
+    return bits.nextClearBit(fromIndex);
+  }
+
+  void addRange(int fromIndex, int toIndex) {
+    ensureValidIndex(fromIndex);
+    ensureValidIndex(toIndex - 1);
+    bits.set(fromIndex, toIndex);
+  }
+
+  private void ensureValidIndex(int cellIndex) {
+    if (cellIndex < 0 || cellIndex >= grid.getCellCount()) {
+      throw new IllegalArgumentException(
+          String.format("Cell index must be between 0 and %d", grid.getCellCount() - 1));
+    }
+  }
+
+  private void ensureCompatible(CellSet other) {
+    if (!hasSameLayout(other)) {
+      throw new IllegalArgumentException("Cell sets belong to grids with different layouts");
+    }
+  }
+
+  private boolean hasSameLayout(CellSet other) {
+    return grid == other.grid || (grid.getCellWidth() == other.grid.getCellWidth()
+        && grid.getCellHeight() == other.grid.getCellHeight() && grid.getNorthBound() == other.grid.getNorthBound()
+        && grid.getSouthBound() == other.grid.getSouthBound());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    CellSet other = (CellSet) o;
+    return hasSameLayout(other) && bits.equals(other.bits);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(grid.getCellWidth(), grid.getCellHeight(), grid.getNorthBound(), grid.getSouthBound(), bits);
+  }
+}
@@ -0,0 +1,212 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encodes a {@link CellSet} into a compact binary form. The dense cell indices are written in ascending order as
+ * variable-length encoded gaps to the previous index. In run-length mode consecutive indices are combined into runs,
+ * which is much smaller for sets covering contiguous rows of the grid.
+ * <p>
+ * The encoding starts with the mode, the layout of the grid, i.e. the cell width, the cell height and the northern and
+ * southern bound, and the number of entries. The layout is only used to reject sets of a different grid, the grid must
+ * be known when decoding. Use {@link #typeAdapter(GlobalGrid)} to embed cell sets in JSON files as
+ * base64 strings.
+ * </p>
+ */
+public final class CellSetCodec {
+
+  private static final byte DELTA_MODE = 1;
+  private static final byte RUN_LENGTH_MODE = 2;
+  private static final int MAX_VARINT_LENGTH = 5;
+  private static final int LAYOUT_LENGTH = 4;
+
+  private CellSetCodec() {
+  }
+
+  /**
+   * Encodes the given cell set. The run-length mode is used if the set contains fewer runs of consecutive cells than
+   * half of its cells.
+   *
+   * @param cells the cell set
+   * @return the encoded cell set
+   */
+  public static byte[] encode(CellSet cells) {
+    return encode(cells, countRuns(cells) < cells.cardinality() / 2);
+  }
+
+  /**
+   * Encodes the given cell set.
+   *
+   * @param cells     the cell set
+   * @param runLength true to combine consecutive cells into runs
+   * @return the encoded cell set
+   */
+  public static byte[] encode(CellSet cells, boolean runLength) {
+    int entryCount = runLength ? countRuns(cells) : cells.cardinality();
+    int entryLength = runLength ? 2 * MAX_VARINT_LENGTH : MAX_VARINT_LENGTH;
+    byte[] buffer = new byte[1 + (LAYOUT_LENGTH + 1) * MAX_VARINT_LENGTH + entryCount * entryLength];
+    buffer[0] = runLength ? RUN_LENGTH_MODE : DELTA_MODE;
+    int pos = 1;
+    for (int value : getLayout(cells.getGrid())) {
+      pos = writeVarint(buffer, pos, value);
+    }
+    pos = writeVarint(buffer, pos, entryCount);
+    int next = 0;
+    for (int cell = cells.nextCell(0); cell >= 0; cell = cells.nextCell(next)) {
+      pos = writeVarint(buffer, pos, cell - next);
+      if (runLength) {
+        next = cells.nextGap(cell);
+        pos = writeVarint(buffer, pos, next - cell - 1);
+      } else {
+        next = cell + 1;
+      }
+    }
+    return Arrays.copyOf(buffer, pos);
+  }
+
+  /**
+   * Decodes a cell set.
+   *
+   * @param grid    the grid of the cell set
+   * @param encoded the encoded cell set
+   * @return the decoded cell set
+   * @throws IllegalArgumentException if the encoding is invalid or belongs to a grid with a different layout
+   */
+  public static CellSet decode(GlobalGrid grid, byte[] encoded) {
+    if (encoded.length == 0 || (encoded[0] != DELTA_MODE && encoded[0] != RUN_LENGTH_MODE)) {
+      throw new IllegalArgumentException("Invalid cell set encoding");
+    }
+    boolean runLength = encoded[0] == RUN_LENGTH_MODE;
+    int[] pos = {1};
+    int[] layout = new int[LAYOUT_LENGTH];
+    for (int i = 0; i < layout.length; i++) {
+      layout[i] = readVarint(encoded, pos);
+    }
+    int[] gridLayout = getLayout(grid);
+    if (!Arrays.equals(layout, gridLayout)) {
+      throw new IllegalArgumentException(String.format(
+          "Cell set is encoded for a grid of %dx%d degree cells from %d to %d, but the grid has %dx%d degree cells"
+              + " from %d to %d", layout[0], layout[1], layout[2] - 90, layout[3] - 90, gridLayout[0], gridLayout[1],
+          gridLayout[2] - 90, gridLayout[3] - 90));
+    }
+    int cellCount = grid.getCellCount();
+    int entryCount = readVarint(encoded, pos);
+    CellSet cells = new CellSet(grid);
+    int next = 0;
+    for (int i = 0; i < entryCount; i++) {
+      int cell = next + readVarint(encoded, pos);
+      next = cell + 1 + (runLength ? readVarint(encoded, pos) : 0);
+      if (next > cellCount || next <= cell) {
+        throw new IllegalArgumentException("Invalid cell set encoding");
+      }
+      cells.addRange(cell, next);
+    }
+    return cells;
+  }
+
+  /**
+   * Creates a Gson type adapter which writes cell sets as unpadded base64 strings of their encoding. The adapter can be
+   * registered for {@link CellSet} when configuring a {@link com.google.gson.GsonBuilder}, e.g. by a
+   * {@link org.eomasters.utils.GsonStoreConfig}.
+   *
+   * @param grid the grid of the cell sets
+   * @return the type adapter
+   */
+  public static TypeAdapter<CellSet> typeAdapter(GlobalGrid grid) {
+    return new CellSetTypeAdapter(grid);
+  }
+
+  private static int[] getLayout(GlobalGrid grid) {
+    // the bounds are offset by 90 degrees, so that the encoded values are not negative
+    return new int[]{(int) grid.getCellWidth(), (int) grid.getCellHeight(), grid.getNorthBound() + 90,
+        grid.getSouthBound() + 90};
+  }
+
+  private static int countRuns(CellSet cells) {
+    int runs = 0;
+    for (int cell = cells.nextCell(0); cell >= 0; cell = cells.nextCell(cells.nextGap(cell))) {
+      runs++;
+    }
+    return runs;
+  }
+
+  private static int writeVarint(byte[] buffer, int pos, int value) {
+    while ((value & ~0x7f) != 0) {
+      buffer[pos++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    buffer[pos++] = (byte) value;
+    return pos;
+  }
+
+  private static int readVarint(byte[] buffer, int[] pos) {
+    int value = 0;
+    for (int shift = 0; shift < 7 * MAX_VARINT_LENGTH; shift += 7) {
+      if (pos[0] >= buffer.length) {
+        throw new IllegalArgumentException("Cell set encoding is truncated");
+      }
+      byte b = buffer[pos[0]++];
+      value |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Invalid cell set encoding");
+  }
+
+  private static final class CellSetTypeAdapter extends TypeAdapter<CellSet> {
+
+    private final GlobalGrid grid;
+
+    private CellSetTypeAdapter(GlobalGrid grid) {
+      this.grid = grid;
+    }
+
+    @Override
+    public void write(JsonWriter out, CellSet cells) throws IOException {
+      if (cells == null) {
+        out.nullValue();
+      } else {
+        out.value(Base64.getEncoder().withoutPadding().encodeToString(encode(cells)));
+      }
+    }
+
+    @Override
+    public CellSet read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      try {
+        return decode(grid, Base64.getDecoder().decode(in.nextString()));
+      } catch (IllegalArgumentException e) {
+        throw new JsonParseException("Invalid cell set: " + e.getMessage(), e);
+      }
+    }
+  }
+}
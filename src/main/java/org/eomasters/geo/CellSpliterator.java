@@ -0,0 +1,115 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.geo;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Generates the dense cell indices of a rectangular block of cells on demand. The block is traversed row-major and
+ * split at row boundaries, so that each part covers complete latitude rows whenever possible. Columns beyond the last
+ * column of the grid wrap around to the first column.
+ */
+final class CellSpliterator implements Spliterator.OfInt {
+
+  private final int numCols;
+  private final int firstRow;
+  private final int firstCol;
+  private final int width;
+  private int pos;
+  private final int end;
+
+  /**
+   * Creates a spliterator for a block of cells.
+   *
+   * @param numCols  the number of columns of the grid
+   * @param firstRow the first row of the block
+   * @param rowCount the number of rows of the block
+   * @param firstCol the first column of the block
+   * @param colCount the number of columns of the block, at most the number of columns of the grid
+   */
+  CellSpliterator(int numCols, int firstRow, int rowCount, int firstCol, int colCount) {
+    this(numCols, firstRow, firstCol, colCount, 0, Math.max(rowCount, 0) * Math.max(colCount, 0));
+  }
+
+  private CellSpliterator(int numCols, int firstRow, int firstCol, int width, int pos, int end) {
+    this.numCols = numCols;
+    this.firstRow = firstRow;
+    this.firstCol = firstCol;
+    this.width = width;
+    this.pos = pos;
+    this.end = end;
+  }
+
+  private int cellIndexAt(int ordinal) {
+    int row = firstRow + ordinal / width;
+    int col = (firstCol + ordinal % width) % numCols;
+    return row * numCols + col;
+  }
+
+  @Override
+  public boolean tryAdvance(IntConsumer action) {
+    if (pos < end) {
+      action.accept(cellIndexAt(pos++));
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void forEachRemaining(IntConsumer action) {
+    int ordinal = pos;
+    pos = end;
+    while (ordinal < end) {
+      int row = firstRow + ordinal / width;
+      int rowOffset = row * numCols;
+      int rowEnd = Math.min(end, (ordinal / width + 1) * width);
+      for (int col = firstCol + ordinal % width; ordinal < rowEnd; ordinal++, col++) {
+        action.accept(rowOffset + (col < numCols ? col : col - numCols));
+      }
+    }
+  }
+
+  @Override
+  public Spliterator.OfInt trySplit() {
+    int remaining = end - pos;
+    if (remaining < 2) {
+      return null;
+    }
+    // prefer splitting at a row boundary, fall back to the middle of the row
+    int firstFullRow = (pos + width - 1) / width;
+    int lastRow = end / width;
+    int mid = ((firstFullRow + lastRow) / 2) * width;
+    if (mid <= pos || mid >= end) {
+      mid = pos + remaining / 2;
+    }
+    CellSpliterator prefix = new CellSpliterator(numCols, firstRow, firstCol, width, pos, mid);
+    pos = mid;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return end - pos;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+  }
+}
@@ -0,0 +1,205 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.Arrays;
+
+/**
+ * Per-cell statistics of binned values. The statistics are stored in primitive arrays indexed by the dense cell index
+ * of the {@link GlobalGrid}. Instances are created by the {@link CellBinner}.
+ */
+public final class CellStatistics {
+
+  private final GlobalGrid grid;
+  private final long[] counts;
+  private final double[] sums;
+  private final double[] mins;
+  private final double[] maxs;
+  private final int binCount;
+  private final double histogramMin;
+  private final double binWidth;
+  private final long[] histogram;
+  private long rejectedCount;
+
+  CellStatistics(GlobalGrid grid, int binCount, double histogramMin, double histogramMax) {
+    this.grid = grid;
+    int cellCount = grid.getCellCount();
+    counts = new long[cellCount];
+    sums = new double[cellCount];
+    mins = new double[cellCount];
+    maxs = new double[cellCount];
+    Arrays.fill(mins, Double.POSITIVE_INFINITY);
+    Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+    this.binCount = binCount;
+    this.histogramMin = histogramMin;
+    this.binWidth = binCount > 0 ? (histogramMax - histogramMin) / binCount : 0;
+    this.histogram = binCount > 0 ? new long[cellCount * binCount] : null;
+  }
+
+  void add(int cellIndex, double value) {
+    if (cellIndex == GlobalGrid.NO_CELL_INDEX || Double.isNaN(value)) {
+      rejectedCount++;
+      return;
+    }
+    counts[cellIndex]++;
+    sums[cellIndex] += value;
+    if (value < mins[cellIndex]) {
+      mins[cellIndex] = value;
+    }
+    if (value > maxs[cellIndex]) {
+      maxs[cellIndex] = value;
+    }
+    if (histogram != null) {
+      int bin = (int) Math.floor((value - histogramMin) / binWidth);
+      if (bin == binCount && value == histogramMin + binCount * binWidth) {
+        bin--;
+      }
+      if (bin >= 0 && bin < binCount) {
+        histogram[cellIndex * binCount + bin]++;
+      }
+    }
+  }
+
+  void merge(CellStatistics other) {
+    for (int i = 0; i < counts.length; i++) {
+      if (other.counts[i] == 0) {
+        continue;
+      }
+      counts[i] += other.counts[i];
+      sums[i] += other.sums[i];
+      mins[i] = Math.min(mins[i], other.mins[i]);
+      maxs[i] = Math.max(maxs[i], other.maxs[i]);
+      if (histogram != null) {
+        int start = i * binCount;
+        for (int b = start; b < start + binCount; b++) {
+          histogram[b] += other.histogram[b];
+        }
+      }
+    }
+    rejectedCount += other.rejectedCount;
+  }
+
+  /**
+   * Returns the grid of the statistics.
+   *
+   * @return the grid
+   */
+  public GlobalGrid getGrid() {
+    return grid;
+  }
+
+  /**
+   * Returns the number of values binned into the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @return the number of values
+   */
+  public long getCount(int cellIndex) {
+    return counts[cellIndex];
+  }
+
+  /**
+   * Returns the sum of the values binned into the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @return the sum, 0 if the cell is empty
+   */
+  public double getSum(int cellIndex) {
+    return sums[cellIndex];
+  }
+
+  /**
+   * Returns the minimum of the values binned into the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @return the minimum, NaN if the cell is empty
+   */
+  public double getMin(int cellIndex) {
+    return counts[cellIndex] > 0 ? mins[cellIndex] : Double.NaN;
+  }
+
+  /**
+   * Returns the maximum of the values binned into the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @return the maximum, NaN if the cell is empty
+   */
+  public double getMax(int cellIndex) {
+    return counts[cellIndex] > 0 ? maxs[cellIndex] : Double.NaN;
+  }
+
+  /**
+   * Returns the mean of the values binned into the given cell.
+   *
+   * @param cellIndex the dense cell index
+   * @return the mean, NaN if the cell is empty
+   */
+  public double getMean(int cellIndex) {
+    return counts[cellIndex] > 0 ? sums[cellIndex] / counts[cellIndex] : Double.NaN;
+  }
+
+  /**
+   * Returns the number of histogram bins per cell.
+   *
+   * @return the number of bins, 0 if no histogram is computed
+   */
+  public int getHistogramBinCount() {
+    return binCount;
+  }
+
+  /**
+   * Returns the histogram of the given cell. Values outside the histogram range are not counted.
+   *
+   * @param cellIndex the dense cell index
+   * @param result    the array receiving the bin counts, at least {@link #getHistogramBinCount()} long
+   * @return the provided result array
+   * @throws IllegalStateException if no histogram is computed
+   */
+  public long[] getHistogram(int cellIndex, long[] result) {
+    if (histogram == null) {
+      throw new IllegalStateException("No histogram has been computed");
+    }
+    System.arraycopy(histogram, cellIndex * binCount, result, 0, binCount);
+    return result;
+  }
+
+  /**
+   * Returns the number of values which have not been binned, because they are NaN or located outside the grid bounds.
+   *
+   * @return the number of rejected values
+   */
+  public long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  /**
+   * Returns the cells containing at least one value.
+   *
+   * @return the set of non-empty cells
+   */
+  public CellSet getBinnedCells() {
+    CellSet cells = new CellSet(grid);
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        cells.add(i);
+      }
+    }
+    return cells;
+  }
+}
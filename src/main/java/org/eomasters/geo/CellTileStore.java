@@ -0,0 +1,351 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stores a float tile per cell of a {@link GlobalGrid} in a single memory-mapped file. Each cell has a fixed slot in
+ * the file computed from its dense cell index. The file is created with its full length but without writing the
+ * slots, so on file systems supporting sparse files only the slots actually used occupy disk space. A slot is marked
+ * as allocated on first access and contains zeros at that point.
+ * <p>
+ * The tiles are accessed as {@link FloatBuffer} views directly on the mapped file, no data is copied. The slots are
+ * mapped in a few large regions of at most 2 GB each, so the number of mappings stays small even if all tiles of a
+ * fine grid are used. A region is mapped on first access; concurrent first accesses are resolved without locking.
+ * Reading and writing tiles from many threads needs no lock either, but the coordination of concurrent writes to the
+ * same tile is up to the caller.
+ * </p>
+ * <p>
+ * The file starts with a header holding the grid definition, the tile size and one allocation flag per cell, followed
+ * by the page aligned slots. All values are stored in little-endian byte order.
+ * </p>
+ */
+public class CellTileStore implements Closeable {
+
+  private static final int MAGIC = 0x544d4f45; // "EOMT" in little-endian
+  private static final int VERSION = 1;
+  private static final int FIXED_HEADER_SIZE = 40;
+  private static final int PAGE_SIZE = 4096;
+  private static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+  private final FileChannel channel;
+  private final GlobalGrid grid;
+  private final int tileWidth;
+  private final int tileHeight;
+  private final long slotSize;
+  private final long dataOffset;
+  private final int slotsPerRegion;
+  private final MappedByteBuffer allocationFlags;
+  private final AtomicReferenceArray<MappedByteBuffer> regions;
+  private final AtomicReferenceArray<FloatBuffer> tiles;
+  private volatile boolean closed;
+
+  private CellTileStore(FileChannel channel, GlobalGrid grid, int tileWidth, int tileHeight) throws IOException {
+    this.channel = channel;
+    this.grid = grid;
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+    int cellCount = grid.getCellCount();
+    this.slotSize = alignToPage((long) tileWidth * tileHeight * Float.BYTES);
+    this.dataOffset = alignToPage(FIXED_HEADER_SIZE + cellCount);
+    this.slotsPerRegion = (int) Math.min(MAX_REGION_SIZE / slotSize, cellCount);
+    this.allocationFlags = channel.map(MapMode.READ_WRITE, FIXED_HEADER_SIZE, cellCount);
+    this.regions = new AtomicReferenceArray<>((cellCount + slotsPerRegion - 1) / slotsPerRegion);
+    this.tiles = new AtomicReferenceArray<>(cellCount);
+  }
+
+  /**
+   * Creates a new store for the given grid. The tile size is the cell raster size of the grid. An existing file is
+   * overwritten.
+   *
+   * @param file the file of the store
+   * @param grid the grid
+   * @return the new store
+   * @throws IOException if the file cannot be created
+   * @see GlobalGrid#getCellRasterWidth()
+   * @see GlobalGrid#getCellRasterHeight()
+   */
+  public static CellTileStore create(Path file, GlobalGrid grid) throws IOException {
+    return create(file, grid, grid.getCellRasterWidth(), grid.getCellRasterHeight());
+  }
+
+  /**
+   * Creates a new store for the given grid with tiles of the given size. An existing file is overwritten.
+   *
+   * @param file       the file of the store
+   * @param grid       the grid
+   * @param tileWidth  the width of the tiles
+   * @param tileHeight the height of the tiles
+   * @return the new store
+   * @throws IOException if the file cannot be created
+   * @throws IllegalArgumentException if a tile would be larger than 2 GB
+   */
+  public static CellTileStore create(Path file, GlobalGrid grid, int tileWidth, int tileHeight) throws IOException {
+    if (tileWidth < 1 || tileHeight < 1
+        || alignToPage((long) tileWidth * tileHeight * Float.BYTES) > MAX_REGION_SIZE) {
+      throw new IllegalArgumentException(String.format("Invalid tile size %d x %d", tileWidth, tileHeight));
+    }
+    GlobalGrid immutableGrid = grid.toImmutable();
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, FIXED_HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION);
+      header.putInt((int) immutableGrid.getCellWidth()).putInt((int) immutableGrid.getCellHeight());
+      header.putInt(immutableGrid.getNorthBound()).putInt(immutableGrid.getSouthBound());
+      header.putDouble(immutableGrid.getPixelSize());
+      header.putInt(tileWidth).putInt(tileHeight);
+      header.force();
+      CellTileStore store = new CellTileStore(channel, immutableGrid, tileWidth, tileHeight);
+      // extend the file to its full length without writing the slots
+      channel.write(ByteBuffer.allocate(1), store.slotPosition(immutableGrid.getCellCount()) - 1);
+      return store;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens an existing store.
+   *
+   * @param file the file of the store
+   * @return the store
+   * @throws IOException if the file cannot be read or is not a tile store
+   */
+  public static CellTileStore open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      if (channel.size() < FIXED_HEADER_SIZE) {
+        throw new IOException("Not a cell tile store: " + file);
+      }
+      MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0, FIXED_HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a cell tile store: " + file);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException(String.format("Unsupported cell tile store version %d: %s", version, file));
+      }
+      int cellWidth = header.getInt();
+      int cellHeight = header.getInt();
+      int north = header.getInt();
+      int south = header.getInt();
+      double pixelSize = header.getDouble();
+      int tileWidth = header.getInt();
+      int tileHeight = header.getInt();
+      GlobalGrid grid = GlobalGrid.createImmutable(cellWidth, cellHeight, pixelSize, north, south);
+      CellTileStore store = new CellTileStore(channel, grid, tileWidth, tileHeight);
+      if (channel.size() < store.slotPosition(grid.getCellCount())) {
+        throw new IOException("Cell tile store is truncated: " + file);
+      }
+      return store;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the grid of the store.
+   *
+   * @return the immutable grid
+   */
+  public GlobalGrid getGrid() {
+    return grid;
+  }
+
+  /**
+   * Returns the width of the tiles.
+   *
+   * @return the tile width
+   */
+  public int getTileWidth() {
+    return tileWidth;
+  }
+
+  /**
+   * Returns the height of the tiles.
+   *
+   * @return the tile height
+   */
+  public int getTileHeight() {
+    return tileHeight;
+  }
+
+  /**
+   * Checks whether the slot of the given cell has been allocated.
+   *
+   * @param cellIndex the dense cell index
+   * @return true if the tile of the cell exists
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   */
+  public boolean isAllocated(int cellIndex) {
+    ensureValidIndex(cellIndex);
+    return allocationFlags.get(cellIndex) != 0;
+  }
+
+  /**
+   * Returns the cells with an allocated slot.
+   *
+   * @return the set of allocated cells
+   */
+  public CellSet getAllocatedCells() {
+    CellSet cells = new CellSet(grid);
+    for (int i = 0; i < grid.getCellCount(); i++) {
+      if (allocationFlags.get(i) != 0) {
+        cells.add(i);
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * Returns a view on the tile of the given cell, allocating the slot if necessary. The pixel (x, y) of the tile is at
+   * the position <code>y * tileWidth + x</code>. Each call returns a new view with its own position and limit, all
+   * views share the mapped content.
+   *
+   * @param cellIndex the dense cell index
+   * @return the tile view
+   * @throws IOException              if the slot cannot be mapped
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   */
+  public FloatBuffer getTile(int cellIndex) throws IOException {
+    ensureValidIndex(cellIndex);
+    FloatBuffer tile = tiles.get(cellIndex);
+    if (tile == null) {
+      tile = createTile(cellIndex);
+      allocationFlags.put(cellIndex, (byte) 1);
+    }
+    return tile.duplicate();
+  }
+
+  /**
+   * Returns a view on the tile of the given cell if the slot has been allocated.
+   *
+   * @param cellIndex the dense cell index
+   * @return the tile view, or null if the slot is not allocated
+   * @throws IOException              if the slot cannot be mapped
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   * @see #getTile(int)
+   */
+  public FloatBuffer getTileIfAllocated(int cellIndex) throws IOException {
+    ensureValidIndex(cellIndex);
+    FloatBuffer tile = tiles.get(cellIndex);
+    if (tile == null) {
+      if (allocationFlags.get(cellIndex) == 0) {
+        return null;
+      }
+      tile = createTile(cellIndex);
+    }
+    return tile.duplicate();
+  }
+
+  /**
+   * Writes changed tiles and allocation flags to the storage device.
+   *
+   * @throws IOException if the data cannot be written
+   */
+  public void flush() throws IOException {
+    // the tiles are written through the mapped regions, forcing the channel does not cover them
+    for (int i = 0; i < regions.length(); i++) {
+      MappedByteBuffer region = regions.get(i);
+      if (region != null) {
+        region.force();
+      }
+    }
+    allocationFlags.force();
+    channel.force(false);
+  }
+
+  /**
+   * Flushes and closes the store. Views obtained before stay valid until they are garbage collected, but must not be
+   * used anymore.
+   *
+   * @throws IOException if the data cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  private FloatBuffer createTile(int cellIndex) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Cell tile store is closed");
+    }
+    ByteBuffer slot = getRegion(cellIndex / slotsPerRegion).duplicate();
+    int slotStart = (int) ((cellIndex % slotsPerRegion) * slotSize);
+    slot.position(slotStart).limit(slotStart + tileWidth * tileHeight * Float.BYTES);
+    FloatBuffer tile = slot.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    // another thread may have created the view concurrently, all use the first one
+    if (tiles.compareAndSet(cellIndex, null, tile)) {
+      return tile;
+    }
+    return tiles.get(cellIndex);
+  }
+
+  private MappedByteBuffer getRegion(int regionIndex) throws IOException {
+    MappedByteBuffer region = regions.get(regionIndex);
+    if (region == null) {
+      int firstCell = regionIndex * slotsPerRegion;
+      int slotCount = Math.min(slotsPerRegion, grid.getCellCount() - firstCell);
+      region = channel.map(MapMode.READ_WRITE, slotPosition(firstCell), slotCount * slotSize);
+      // another thread may have mapped the region concurrently, all use the first one
+      if (!regions.compareAndSet(regionIndex, null, region)) {
+        region = regions.get(regionIndex);
+      }
+    }
+    return region;
+  }
+
+  private void ensureValidIndex(int cellIndex) {
+    if (cellIndex < 0 || cellIndex >= grid.getCellCount()) {
+      throw new IllegalArgumentException(
+          String.format("Cell index must be between 0 and %d", grid.getCellCount() - 1));
+    }
+  }
+
+  private long slotPosition(int cellIndex) {
+    return dataOffset + cellIndex * slotSize;
+  }
+
+  private static long alignToPage(long size) {
+    return (size + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+  }
+}
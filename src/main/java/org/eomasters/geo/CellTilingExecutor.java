@@ -0,0 +1,228 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import org.eomasters.utils.ProgressManager;
+import org.eomasters.utils.ProgressTask;
+
+/**
+ * Processes the cells of a {@link GlobalGrid} concurrently. The number of cells being processed at the same time is
+ * bounded, so that the memory needed for the cells in flight stays bounded as well. A failing cell does not affect
+ * the processing of the other cells; the failures are collected and returned.
+ * <p>
+ * Optionally the progress is reported to the {@link ProgressManager}. A task with one sub-task per cell is registered.
+ * The sub-task of a cell is named after the task and the formatted cell identifier, e.g. <code>tiling/N45E006</code>.
+ * The calls to the progress manager are serialized across all executors, but not with other users of the progress
+ * manager.
+ * </p>
+ */
+public class CellTilingExecutor {
+
+  // the ProgressManager is a global singleton which is not thread-safe, so the lock is shared by all executors
+  private static final Object PROGRESS_LOCK = new Object();
+
+  private final GlobalGrid grid;
+  private ExecutorService executorService;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private int maxInFlight = -1;
+  private String progressTaskId;
+
+  /**
+   * Creates an executor for the cells of the given grid.
+   *
+   * @param grid the grid
+   */
+  public CellTilingExecutor(GlobalGrid grid) {
+    this.grid = grid;
+  }
+
+  /**
+   * Sets the number of threads used when no executor service is provided. Defaults to the number of available
+   * processors.
+   *
+   * @param parallelism the number of threads
+   * @return this executor
+   */
+  public CellTilingExecutor withParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Sets the executor service which runs the cells. It is not shut down by this executor. If not set, a thread pool
+   * with the configured parallelism is created for each run.
+   *
+   * @param executorService the executor service
+   * @return this executor
+   */
+  public CellTilingExecutor withExecutorService(ExecutorService executorService) {
+    this.executorService = executorService;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of cells processed or queued at the same time. Defaults to twice the parallelism.
+   *
+   * @param maxInFlight the maximum number of cells in flight
+   * @return this executor
+   */
+  public CellTilingExecutor withMaxInFlight(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("Maximum number of cells in flight must be at least 1");
+    }
+    this.maxInFlight = maxInFlight;
+    return this;
+  }
+
+  /**
+   * Enables the progress reporting to the {@link ProgressManager} under the given task identifier.
+   *
+   * @param taskId the task identifier
+   * @return this executor
+   */
+  public CellTilingExecutor withProgressTask(String taskId) {
+    this.progressTaskId = taskId;
+    return this;
+  }
+
+  /**
+   * Processes the cells intersected by the given bounding box.
+   *
+   * @param minX      the minimum longitude of the bounding box
+   * @param minY      the minimum latitude of the bounding box
+   * @param maxX      the maximum longitude of the bounding box
+   * @param maxY      the maximum latitude of the bounding box
+   * @param processor the processor called for each cell
+   * @return the failures by dense cell index, empty if all cells succeeded
+   * @throws InterruptedException if the thread is interrupted while waiting for the cells
+   * @see GlobalGrid#getIntersectedCellIndices(double, double, double, double, java.util.function.IntConsumer)
+   */
+  public Map<Integer, Exception> process(double minX, double minY, double maxX, double maxY, CellProcessor processor)
+      throws InterruptedException {
+    return process(grid.streamIntersectedCellIndices(minX, minY, maxX, maxY).toArray(), processor);
+  }
+
+  /**
+   * Processes the cells of the given cell set.
+   *
+   * @param cells     the cells to process
+   * @param processor the processor called for each cell
+   * @return the failures by dense cell index, empty if all cells succeeded
+   * @throws InterruptedException if the thread is interrupted while waiting for the cells
+   */
+  public Map<Integer, Exception> process(CellSet cells, CellProcessor processor) throws InterruptedException {
+    return process(cells.toArray(), processor);
+  }
+
+  /**
+   * Processes the cells with the given dense cell indices. The cells are started in the given order. The method
+   * returns when all cells are processed.
+   *
+   * @param cellIndices the dense cell indices
+   * @param processor   the processor called for each cell
+   * @return the failures by dense cell index, empty if all cells succeeded
+   * @throws InterruptedException if the thread is interrupted while waiting for the cells
+   */
+  public Map<Integer, Exception> process(int[] cellIndices, CellProcessor processor) throws InterruptedException {
+    Map<Integer, Exception> failures = Collections.synchronizedMap(new TreeMap<>());
+    if (cellIndices.length == 0) {
+      return failures;
+    }
+    boolean ownExecutor = executorService == null;
+    ExecutorService executor = ownExecutor ? Executors.newFixedThreadPool(parallelism) : executorService;
+    Semaphore permits = new Semaphore(maxInFlight > 0 ? maxInFlight : 2 * parallelism);
+    CountDownLatch remaining = new CountDownLatch(cellIndices.length);
+    ProgressTask progressTask = registerProgress(cellIndices.length);
+    try {
+      for (int cellIndex : cellIndices) {
+        permits.acquire();
+        try {
+          executor.execute(() -> {
+            String subTaskId = startSubTask(progressTask, cellIndex);
+            try {
+              processor.process(cellIndex);
+            } catch (Exception e) {
+              failures.put(cellIndex, e);
+            } finally {
+              finishSubTask(subTaskId);
+              permits.release();
+              remaining.countDown();
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          failures.put(cellIndex, e);
+          permits.release();
+          remaining.countDown();
+        }
+      }
+      remaining.await();
+    } finally {
+      if (ownExecutor) {
+        executor.shutdownNow();
+      }
+      if (progressTask != null) {
+        synchronized (PROGRESS_LOCK) {
+          progressTask.done();
+        }
+      }
+    }
+    return failures;
+  }
+
+  private ProgressTask registerProgress(int cellCount) {
+    if (progressTaskId == null) {
+      return null;
+    }
+    synchronized (PROGRESS_LOCK) {
+      return ProgressManager.registerTask(progressTaskId, cellCount);
+    }
+  }
+
+  private String startSubTask(ProgressTask progressTask, int cellIndex) {
+    if (progressTask == null) {
+      return null;
+    }
+    String subTaskId = progressTaskId + "/" + grid.getCellIdString(cellIndex);
+    synchronized (PROGRESS_LOCK) {
+      progressTask.with(subTaskId, 1);
+      ProgressManager.registerTask(subTaskId, 1).with(grid.getCellIdString(cellIndex));
+    }
+    return subTaskId;
+  }
+
+  private void finishSubTask(String subTaskId) {
+    if (subTaskId == null) {
+      return;
+    }
+    synchronized (PROGRESS_LOCK) {
+      ProgressManager.worked(subTaskId, 1);
+    }
+  }
+}
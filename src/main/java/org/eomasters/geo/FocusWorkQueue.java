@@ -0,0 +1,297 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent queue of cells of a {@link GlobalGrid} which hands out the pending cell closest to a focus point first.
+ * The distance is the great-circle distance from the focus point to the cell center. Worker threads can use
+ * {@link #take()} to process cells in the order of their distance to the focus, e.g. the region a user is looking at.
+ * <p>
+ * The queue is not sorted. The pending cells are kept in a bit set, and each poll searches the rows outwards from the
+ * focus, within a row only the nearest pending cells east and west of the focus are considered. The search stops as
+ * soon as the latitude gap to the next row exceeds the distance of the best cell found. Therefore changing the focus is
+ * a constant time operation.
+ * </p>
+ */
+public class FocusWorkQueue {
+
+  private final GlobalGrid grid;
+  private final int numCols;
+  private final int numRows;
+  private final BitSet pending;
+  private final int[] rowCounts;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private int size;
+  private double focusLon;
+  private double focusLat;
+  private boolean closed;
+
+  /**
+   * Creates an empty queue for the cells of the given grid. The grid bounds at the time of creation are used.
+   *
+   * @param grid     the grid
+   * @param focusLon the longitude of the initial focus
+   * @param focusLat the latitude of the initial focus
+   */
+  public FocusWorkQueue(GlobalGrid grid, double focusLon, double focusLat) {
+    this.grid = grid.toImmutable();
+    this.numCols = this.grid.getColumnCount();
+    this.numRows = this.grid.getRowCount();
+    this.pending = new BitSet(this.grid.getCellCount());
+    this.rowCounts = new int[numRows];
+    this.focusLon = focusLon;
+    this.focusLat = focusLat;
+  }
+
+  /**
+   * Moves the focus. The following polls prefer the cells close to the new focus.
+   *
+   * @param lon the longitude of the focus
+   * @param lat the latitude of the focus
+   */
+  public void setFocus(double lon, double lat) {
+    lock.lock();
+    try {
+      focusLon = lon;
+      focusLat = lat;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds a cell to the queue.
+   *
+   * @param cellIndex the dense cell index
+   * @return true if the cell was added, false if it is already pending
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   * @throws IllegalStateException    if the queue has been closed
+   */
+  public boolean add(int cellIndex) {
+    if (cellIndex < 0 || cellIndex >= grid.getCellCount()) {
+      throw new IllegalArgumentException(
+          String.format("Cell index must be between 0 and %d", grid.getCellCount() - 1));
+    }
+    lock.lock();
+    try {
+      ensureOpen();
+      if (pending.get(cellIndex)) {
+        return false;
+      }
+      pending.set(cellIndex);
+      rowCounts[cellIndex / numCols]++;
+      size++;
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds all cells of the given set to the queue.
+   *
+   * @param cells the cells to add
+   * @throws IllegalStateException if the queue has been closed
+   */
+  public void addAll(CellSet cells) {
+    lock.lock();
+    try {
+      ensureOpen();
+      cells.forEach(this::add);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes a pending cell from the queue.
+   *
+   * @param cellIndex the dense cell index
+   * @return true if the cell was pending
+   */
+  public boolean remove(int cellIndex) {
+    lock.lock();
+    try {
+      if (cellIndex < 0 || !pending.get(cellIndex)) {
+        return false;
+      }
+      removePending(cellIndex);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Checks whether the given cell is pending.
+   *
+   * @param cellIndex the dense cell index
+   * @return true if the cell is pending
+   */
+  public boolean contains(int cellIndex) {
+    lock.lock();
+    try {
+      return cellIndex >= 0 && pending.get(cellIndex);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of pending cells.
+   *
+   * @return the number of cells
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Checks whether no cell is pending.
+   *
+   * @return true if the queue is empty
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Removes and returns the pending cell closest to the focus.
+   *
+   * @return the dense cell index, or {@link GlobalGrid#NO_CELL_INDEX} if the queue is empty
+   */
+  public int poll() {
+    lock.lock();
+    try {
+      return size > 0 ? removePending(findNearest()) : GlobalGrid.NO_CELL_INDEX;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes and returns the pending cell closest to the focus, waiting for a cell if the queue is empty. After the
+   * queue has been closed the remaining cells are returned, and then {@link GlobalGrid#NO_CELL_INDEX} to signal the
+   * end to the worker threads.
+   *
+   * @return the dense cell index, or {@link GlobalGrid#NO_CELL_INDEX} if the queue is closed and empty
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public int take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (size == 0 && !closed) {
+        notEmpty.await();
+      }
+      return size > 0 ? removePending(findNearest()) : GlobalGrid.NO_CELL_INDEX;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Closes the queue. No cells can be added anymore, and threads waiting in {@link #take()} are released once the
+   * queue is empty.
+   */
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int findNearest() {
+    int focusRow = Math.min(Math.max((int) Math.floor((grid.getNorthBound() - focusLat) / grid.getCellHeight()), 0),
+        numRows - 1);
+    int focusCol = Math.floorMod((int) Math.floor((focusLon + 180) / grid.getCellWidth()), numCols);
+    int best = GlobalGrid.NO_CELL_INDEX;
+    double bestDistance = Double.POSITIVE_INFINITY;
+    int northRow = focusRow;
+    int southRow = focusRow + 1;
+    while (northRow >= 0 || southRow < numRows) {
+      double northGap = northRow >= 0 ? rowGap(northRow) : Double.POSITIVE_INFINITY;
+      double southGap = southRow < numRows ? rowGap(southRow) : Double.POSITIVE_INFINITY;
+      int row = northGap <= southGap ? northRow-- : southRow++;
+      if (Math.min(northGap, southGap) > bestDistance) {
+        break;
+      }
+      if (rowCounts[row] == 0) {
+        continue;
+      }
+      int rowStart = row * numCols;
+      int rowEnd = rowStart + numCols;
+      int east = pending.nextSetBit(rowStart + focusCol);
+      if (east < 0 || east >= rowEnd) {
+        east = pending.nextSetBit(rowStart);
+      }
+      int west = pending.previousSetBit(rowStart + focusCol - 1);
+      if (west < rowStart) {
+        west = pending.previousSetBit(rowEnd - 1);
+      }
+      double eastDistance = centerDistance(east);
+      double westDistance = west == east ? eastDistance : centerDistance(west);
+      int candidate = westDistance < eastDistance || (westDistance == eastDistance && west < east) ? west : east;
+      double distance = Math.min(eastDistance, westDistance);
+      if (distance < bestDistance || (distance == bestDistance && candidate < best)) {
+        best = candidate;
+        bestDistance = distance;
+      }
+    }
+    return best;
+  }
+
+  private double rowGap(int row) {
+    double centerLat = grid.getNorthBound() - (row + 0.5) * grid.getCellHeight();
+    // no cell of the row can be closer than the distance along the meridian
+    return GeoUtils.EARTH_RADIUS_KM * Math.toRadians(Math.abs(focusLat - centerLat));
+  }
+
+  private double centerDistance(int cellIndex) {
+    double centerLon = -180 + (cellIndex % numCols + 0.5) * grid.getCellWidth();
+    double centerLat = grid.getNorthBound() - (cellIndex / numCols + 0.5) * grid.getCellHeight();
+    return GeoUtils.distance(focusLon, focusLat, centerLon, centerLat);
+  }
+
+  private int removePending(int cellIndex) {
+    pending.clear(cellIndex);
+    rowCounts[cellIndex / numCols]--;
+    size--;
+    return cellIndex;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Queue has been closed");
+    }
+  }
+}
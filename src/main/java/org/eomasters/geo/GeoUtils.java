@@ -0,0 +1,124 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+/**
+ * Utility methods for geographic calculations on a spherical earth.
+ */
+public class GeoUtils {
+
+  /**
+   * The mean earth radius in kilometres.
+   */
+  public static final double EARTH_RADIUS_KM = 6371.0088;
+
+  private GeoUtils() {
+  }
+
+  /**
+   * Calculates the great-circle distance between two locations using the haversine formula.
+   *
+   * @param lon1 the longitude of the first location
+   * @param lat1 the latitude of the first location
+   * @param lon2 the longitude of the second location
+   * @param lat2 the latitude of the second location
+   * @return the distance in kilometres
+   */
+  public static double distance(double lon1, double lat1, double lon2, double lat2) {
+    double phi1 = Math.toRadians(lat1);
+    double phi2 = Math.toRadians(lat2);
+    double sinDeltaPhi = Math.sin((phi2 - phi1) / 2);
+    double sinDeltaLambda = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+    double a = sinDeltaPhi * sinDeltaPhi + Math.cos(phi1) * Math.cos(phi2) * sinDeltaLambda * sinDeltaLambda;
+    return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /**
+   * Calculates the great-circle distance from a location to the nearest point of a box bounded by two meridians and
+   * two parallels. The box may cross the anti-meridian. If the location is inside the box the distance is 0.
+   *
+   * @param lon   the longitude of the location
+   * @param lat   the latitude of the location
+   * @param west  the western longitude of the box
+   * @param north the northern latitude of the box
+   * @param east  the eastern longitude of the box
+   * @param south the southern latitude of the box
+   * @return the distance in kilometres
+   */
+  public static double distanceToBox(double lon, double lat, double west, double north, double east, double south) {
+    double boxWidth = east - west;
+    if (boxWidth < 0) {
+      boxWidth += 360;
+    }
+    double lonOffset = ((lon - west) % 360 + 360) % 360;
+    if (lonOffset <= boxWidth) {
+      // within the longitude range the nearest point is on the same meridian
+      double latGap = Math.max(0, Math.max(lat - north, south - lat));
+      return EARTH_RADIUS_KM * Math.toRadians(latGap);
+    }
+    return Math.min(distanceToMeridian(lon, lat, west, north, south), distanceToMeridian(lon, lat, east, north, south));
+  }
+
+  /**
+   * Wraps a longitude difference into the range -180 to 180, so that it denotes the shorter way around the globe.
+   *
+   * @param delta the longitude difference in degrees
+   * @return the wrapped difference
+   */
+  public static double wrapDelta(double delta) {
+    delta %= 360;
+    if (delta > 180) {
+      delta -= 360;
+    } else if (delta < -180) {
+      delta += 360;
+    }
+    return delta;
+  }
+
+  /**
+   * Unwraps the longitudes of a path, so that consecutive longitudes differ by at most 180 degrees. A path crossing the
+   * anti-meridian continues beyond -180 or 180 degrees instead of jumping.
+   *
+   * @param lons the longitudes of the path, not empty
+   * @return the unwrapped longitudes, starting with the first longitude
+   */
+  public static double[] unwrapLongitudes(double[] lons) {
+    double[] unwrapped = new double[lons.length];
+    unwrapped[0] = lons[0];
+    for (int i = 1; i < lons.length; i++) {
+      unwrapped[i] = unwrapped[i - 1] + wrapDelta(lons[i] - lons[i - 1]);
+    }
+    return unwrapped;
+  }
+
+  private static double distanceToMeridian(double lon, double lat, double meridian, double north, double south) {
+    double deltaLambda = Math.toRadians(lon - meridian);
+    double cosDeltaLambda = Math.cos(deltaLambda);
+    double nearestLat;
+    if (cosDeltaLambda > 0) {
+      // latitude of the foot point on the meridian's half great circle
+      nearestLat = Math.toDegrees(Math.atan(Math.tan(Math.toRadians(lat)) / cosDeltaLambda));
+    } else {
+      // more than 90 degrees apart, the nearest point of the half great circle is a pole
+      nearestLat = lat >= 0 ? 90 : -90;
+    }
+    nearestLat = Math.min(Math.max(nearestLat, south), north);
+    return distance(lon, lat, meridian, nearestLat);
+  }
+}
@@ -3,7 +3,7 @@
  * EOM Commons - Library of common utilities for Java
  * -> https://www.eomasters.org/
  * ======================================================================
- * Copyright (C) 2023 - 2024 Marco Peters
+ * Copyright (C) 2023 - 2026 Marco Peters
  * ======================================================================
  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
@@ -22,6 +22,11 @@ import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Defines a global grid of cells.
@@ -34,14 +39,28 @@ import java.util.Set;
  * of longitude and 90 degrees (default) of latitude. The second cell is at -177 degrees of longitude and 90 degrees of
  * latitude.
  * </p>
+ * <p>
+ * In addition to the Point based identifiers, each cell can be addressed by a dense cell index. The index is
+ * row-major, starting with 0 at the upper left cell and ending with {@link #getCellCount()} - 1 at the lower right
+ * cell. The index based methods do not create an object per cell.
+ * </p>
+ * <p>
+ * A grid created by {@link #createImmutable(int, int, double, int, int)} cannot be changed and can be shared between
+ * threads. Values derived from the grid bounds, like the number of cells, are computed once per bounds.
+ * </p>
  */
 public class GlobalGrid {
 
+  /**
+   * The cell index used by the bulk methods for coordinates which are outside the grid bounds or not a number.
+   */
+  public static final int NO_CELL_INDEX = -1;
+
   private final int cellWidth;
   private final int cellHeight;
   private final double pixelSize;
-  private int northBound;
-  private int southBound;
+  private final boolean immutable;
+  private volatile Layout layout;
   private final static int NORTH_BOUND = 90;
   private final static int SOUTH_BOUND = -90;
   private final static int WEST_BOUND = -180;
@@ -58,10 +77,54 @@ public class GlobalGrid {
    * @param pixelSize  the size of each pixel in degrees of longitude
    */
   public GlobalGrid(int cellWidth, int cellHeight, double pixelSize) {
+    this(cellWidth, cellHeight, pixelSize, NORTH_BOUND, SOUTH_BOUND, false);
+  }
+
+  private GlobalGrid(int cellWidth, int cellHeight, double pixelSize, int north, int south, boolean immutable) {
     this.cellWidth = cellWidth;
     this.cellHeight = cellHeight;
     this.pixelSize = pixelSize;
-    setGridBounds(NORTH_BOUND, SOUTH_BOUND);
+    this.immutable = immutable;
+    this.layout = new Layout(cellWidth, cellHeight, north, south);
+  }
+
+  /**
+   * Creates a new immutable global grid with the specified cell size and grid bounds. The bounds of an immutable grid
+   * cannot be changed, so it can be shared between threads without synchronization.
+   *
+   * @param cellWidth  the width of each cell in degrees of longitude
+   * @param cellHeight the height of each cell in degrees of latitude
+   * @param pixelSize  the size of each pixel in degrees of longitude
+   * @param north      the northern latitude limit
+   * @param south      the southern latitude limit
+   * @return the immutable grid
+   */
+  public static GlobalGrid createImmutable(int cellWidth, int cellHeight, double pixelSize, int north, int south) {
+    return new GlobalGrid(cellWidth, cellHeight, pixelSize, north, south, true);
+  }
+
+  /**
+   * Returns an immutable grid with the same cell size and the current grid bounds of this grid. If this grid is
+   * already immutable, it is returned itself.
+   *
+   * @return the immutable grid
+   * @see #createImmutable(int, int, double, int, int)
+   */
+  public GlobalGrid toImmutable() {
+    if (immutable) {
+      return this;
+    }
+    Layout current = layout;
+    return createImmutable(cellWidth, cellHeight, pixelSize, current.northBound, current.southBound);
+  }
+
+  /**
+   * Checks whether this grid is immutable.
+   *
+   * @return true if the grid bounds cannot be changed
+   */
+  public boolean isImmutable() {
+    return immutable;
   }
 
   /**
@@ -69,10 +132,13 @@ public class GlobalGrid {
    *
    * @param north the northern latitude limit
    * @param south the southern latitude limit
+   * @throws UnsupportedOperationException if the grid is immutable
    */
   public void setGridBounds(int north, int south) {
-    this.northBound = north;
-    this.southBound = south;
+    if (immutable) {
+      throw new UnsupportedOperationException("The bounds of an immutable grid cannot be changed");
+    }
+    this.layout = new Layout(cellWidth, cellHeight, north, south);
   }
 
   /**
@@ -113,15 +179,87 @@ public class GlobalGrid {
     if (cellString.length() != 7) {
       throw new IllegalArgumentException("Cell identifier must be 7 characters long");
     }
-    int lat = Integer.parseInt(cellString.substring(1, 3));
-    if (cellString.charAt(0) == 'S') {
-      lat *= -1;
+    return parseCellId(cellString, 0);
+  }
+
+  /**
+   * Parses a cell identifier from the given character sequence, starting at the given offset, without creating
+   * intermediate strings. Exactly 7 characters are read.
+   *
+   * @param chars  the character sequence containing the cell identifier
+   * @param offset the position of the first character of the cell identifier
+   * @return a Point object representing the cell identifier
+   * @throws IllegalArgumentException if the characters do not form a valid cell identifier
+   * @see #parseCellId(String)
+   */
+  public static Point parseCellId(CharSequence chars, int offset) {
+    ensureCellIdLength(chars.length(), offset);
+    int lat = parseDigit(chars.charAt(offset + 1)) * 10 + parseDigit(chars.charAt(offset + 2));
+    int lon = parseDigit(chars.charAt(offset + 4)) * 100 + parseDigit(chars.charAt(offset + 5)) * 10
+        + parseDigit(chars.charAt(offset + 6));
+    return new Point(lon * parseSign(chars.charAt(offset + 3), 'E', 'W'),
+        lat * parseSign(chars.charAt(offset), 'N', 'S'));
+  }
+
+  /**
+   * Parses a cell identifier from the given character sequence, starting at the given offset, and returns the dense
+   * cell index. Neither strings nor Point objects are created.
+   *
+   * @param chars  the character sequence containing the cell identifier
+   * @param offset the position of the first character of the cell identifier
+   * @return the dense cell index
+   * @throws IllegalArgumentException if the characters do not form a valid cell identifier or the cell is not within
+   *                                  the grid bounds
+   */
+  public int parseCellIndex(CharSequence chars, int offset) {
+    ensureCellIdLength(chars.length(), offset);
+    int lat = parseDigit(chars.charAt(offset + 1)) * 10 + parseDigit(chars.charAt(offset + 2));
+    int lon = parseDigit(chars.charAt(offset + 4)) * 100 + parseDigit(chars.charAt(offset + 5)) * 10
+        + parseDigit(chars.charAt(offset + 6));
+    return toCellIndex(lon * parseSign(chars.charAt(offset + 3), 'E', 'W'),
+        lat * parseSign(chars.charAt(offset), 'N', 'S'));
+  }
+
+  /**
+   * Parses a cell identifier from the given ASCII encoded bytes, starting at the given offset, and returns the dense
+   * cell index. Neither strings nor Point objects are created.
+   *
+   * @param bytes  the bytes containing the cell identifier
+   * @param offset the position of the first byte of the cell identifier
+   * @return the dense cell index
+   * @throws IllegalArgumentException if the bytes do not form a valid cell identifier or the cell is not within the
+   *                                  grid bounds
+   */
+  public int parseCellIndex(byte[] bytes, int offset) {
+    ensureCellIdLength(bytes.length, offset);
+    int lat = parseDigit((char) bytes[offset + 1]) * 10 + parseDigit((char) bytes[offset + 2]);
+    int lon = parseDigit((char) bytes[offset + 4]) * 100 + parseDigit((char) bytes[offset + 5]) * 10
+        + parseDigit((char) bytes[offset + 6]);
+    return toCellIndex(lon * parseSign((char) bytes[offset + 3], 'E', 'W'),
+        lat * parseSign((char) bytes[offset], 'N', 'S'));
+  }
+
+  private static void ensureCellIdLength(int length, int offset) {
+    if (offset < 0 || length - offset < 7) {
+      throw new IllegalArgumentException("Cell identifier must be 7 characters long");
     }
-    int lon = Integer.parseInt(cellString.substring(4, 7));
-    if (cellString.charAt(3) == 'W') {
-      lon *= -1;
+  }
+
+  private static int parseDigit(char c) {
+    if (c < '0' || c > '9') {
+      throw new IllegalArgumentException("Invalid digit in cell identifier: " + c);
+    }
+    return c - '0';
+  }
+
+  private static int parseSign(char c, char positive, char negative) {
+    if (c == positive) {
+      return 1;
+    } else if (c == negative) {
+      return -1;
     }
-    return new Point(lon, lat);
+    throw new IllegalArgumentException(
+        String.format("Invalid direction in cell identifier: %s, expected %s or %s", c, positive, negative));
   }
 
   /**
@@ -139,7 +277,8 @@ public class GlobalGrid {
    * @return the height of the grid in latitude degrees
    */
   public int getGridHeight() {
-    return (northBound + 90) - (southBound + 90);
+    Layout current = layout;
+    return current.northBound - current.southBound;
   }
 
   /**
@@ -169,8 +308,48 @@ public class GlobalGrid {
     return pixelSize;
   }
 
+  /**
+   * Returns the number of pixel columns of the raster of a cell.
+   *
+   * @return the number of pixel columns
+   */
+  public int getCellRasterWidth() {
+    return (int) Math.round(cellWidth / pixelSize);
+  }
+
+  /**
+   * Returns the number of pixel rows of the raster of a cell.
+   *
+   * @return the number of pixel rows
+   */
+  public int getCellRasterHeight() {
+    return (int) Math.round(cellHeight / pixelSize);
+  }
+
+  /**
+   * Returns the northern latitude limit of the grid.
+   *
+   * @return the northern latitude limit
+   */
+  public int getNorthBound() {
+    return layout.northBound;
+  }
+
+  /**
+   * Returns the southern latitude limit of the grid.
+   *
+   * @return the southern latitude limit
+   */
+  public int getSouthBound() {
+    return layout.southBound;
+  }
+
   public boolean isInGridBounds(double lon, double lat) {
-    return lon >= WEST_BOUND && lon <= EAST_BOUND && lat >= southBound && lat <= northBound;
+    return isInGridBounds(layout, lon, lat);
+  }
+
+  private static boolean isInGridBounds(Layout current, double lon, double lat) {
+    return lon >= WEST_BOUND && lon <= EAST_BOUND && lat >= current.southBound && lat <= current.northBound;
   }
 
   /**
@@ -189,24 +368,55 @@ public class GlobalGrid {
    * @return a string representing the cell identifier
    */
   public static String formatCellId(Point cellId) {
-    StringBuilder sb = new StringBuilder();
-    if (cellId.y >= 0) {
-      sb.append("N");
-    } else {
-      sb.append("S");
-    }
-    sb.append(String.format("%02d", Math.abs(cellId.y)));
-    if (cellId.x < 0) {
-      sb.append("W");
-    } else {
-      sb.append("E");
+    return formatCellId(cellId.x, cellId.y);
+  }
+
+  private static String formatCellId(int cellX, int cellY) {
+    int lat = Math.abs(cellY);
+    char[] chars = new char[7];
+    chars[0] = cellY >= 0 ? 'N' : 'S';
+    chars[1] = (char) ('0' + lat / 10 % 10);
+    chars[2] = (char) ('0' + lat % 10);
+    int lon = Math.abs(cellX);
+    chars[3] = cellX < 0 ? 'W' : 'E';
+    chars[4] = (char) ('0' + lon / 100 % 10);
+    chars[5] = (char) ('0' + lon / 10 % 10);
+    chars[6] = (char) ('0' + lon % 10);
+    return new String(chars);
+  }
+
+  /**
+   * Returns the formatted cell identifier of the cell with the given dense cell index, as formatted by
+   * {@link #formatCellId(Point)}. The strings of all cells are created once, on first use, and shared afterward.
+   *
+   * @param cellIndex the dense cell index
+   * @return a string representing the cell identifier
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   */
+  public String getCellIdString(int cellIndex) {
+    Layout current = layout;
+    ensureValidIndex(current, cellIndex);
+    String[] strings = current.cellIdStrings;
+    if (strings == null) {
+      strings = new String[current.cellCount];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = formatCellId(current.cellXs[i % current.numCols], current.cellYs[i / current.numCols]);
+      }
+      // concurrent initialization creates equal tables, so no synchronization is needed
+      current.cellIdStrings = strings;
     }
-    return sb.append(String.format("%03d", Math.abs(cellId.x))).toString();
+    return strings[cellIndex];
   }
 
   /**
    * Returns a list of cell identifiers for the cells intersected by the provided bounding box. The cell identifiers are
    * ordered from the upper left corner to the lower right corner.
+   * <p>
+   * The bounding box may cross the anti-meridian, either by specifying <code>minX</code> greater than
+   * <code>maxX</code>, e.g. 170 to -170, or by longitudes outside the range -180 to 180, e.g. 170 to 190. In this case
+   * each row contains the cells from <code>minX</code> to the anti-meridian followed by the cells from the
+   * anti-meridian to <code>maxX</code>. A bounding box spanning 360 degrees or more covers all columns. A bounding box
+   * with <code>minY</code> greater than <code>maxY</code> intersects no cells.
    *
    * @param minX the minimum longitude of the bounding box
    * @param minY the minimum latitude of the bounding box
@@ -216,20 +426,229 @@ public class GlobalGrid {
    */
   public List<Point> getIntersectedCells(double minX, double minY, double maxX, double maxY) {
     List<Point> cellIds = new ArrayList<>();
-    Point ulCellId = getCellId(Math.max(minX, WEST_BOUND), Math.min(maxY, northBound));
-    Point lrCellId = getCellId(Math.min(maxX, EAST_BOUND - cellWidth / 2.0), Math.max(minY, southBound));
-    minX = ulCellId.x;
-    maxY = ulCellId.y;
-    maxX = lrCellId.x;
-    minY = lrCellId.y;
-    for (int lat = (int) Math.ceil(maxY); lat >= (int) Math.floor(minY); lat -= cellHeight) {
-      for (int lon = (int) Math.floor(minX); lon <= (int) Math.ceil(maxX); lon += cellWidth) {
-        cellIds.add(new Point(lon, lat));
-      }
-    }
+    getIntersectedCellIndices(minX, minY, maxX, maxY, cellIndex -> cellIds.add(toCellId(cellIndex)));
     return cellIds;
   }
 
+  /**
+   * Provides the cell identifiers of the cells touched by the provided polygon to the given consumer.
+   *
+   * @param lons     the longitudes of the polygon vertices
+   * @param lats     the latitudes of the polygon vertices
+   * @param consumer the consumer receiving the cell identifiers
+   * @throws IllegalArgumentException if the arrays are not of the same length, have less than 3 vertices or the
+   *                                  polygon encloses a pole
+   * @see #getIntersectedCellIndices(double[], double[], IntConsumer)
+   */
+  public void getIntersectedCells(double[] lons, double[] lats, Consumer<Point> consumer) {
+    getIntersectedCellIndices(lons, lats, cellIndex -> consumer.accept(toCellId(cellIndex)));
+  }
+
+  /**
+   * Provides the dense cell indices of the cells intersected by the provided bounding box to the given consumer. The
+   * cells are provided in the same order as by {@link #getIntersectedCells(double, double, double, double)}, but no
+   * object is created per cell.
+   *
+   * @param minX     the minimum longitude of the bounding box
+   * @param minY     the minimum latitude of the bounding box
+   * @param maxX     the maximum longitude of the bounding box
+   * @param maxY     the maximum latitude of the bounding box
+   * @param consumer the consumer receiving the dense cell indices
+   */
+  public void getIntersectedCellIndices(double minX, double minY, double maxX, double maxY, IntConsumer consumer) {
+    intersectedCellsSpliterator(minX, minY, maxX, maxY).forEachRemaining(consumer);
+  }
+
+  /**
+   * Provides the dense cell indices of the cells touched by the provided polygon to the given consumer. The polygon is
+   * given as a ring of longitude and latitude vertices, the ring is closed implicitly. Edges crossing the
+   * anti-meridian are detected by a longitude jump of more than 180 degrees, so the polygon may extend across it. In
+   * contrast to the bounding box variant only cells which share an area with the polygon are provided. The cells are
+   * provided row by row from the upper left to the lower right corner.
+   *
+   * @param lons     the longitudes of the polygon vertices
+   * @param lats     the latitudes of the polygon vertices
+   * @param consumer the consumer receiving the dense cell indices
+   * @throws IllegalArgumentException if the arrays are not of the same length, have less than 3 vertices or the
+   *                                  polygon encloses a pole
+   */
+  public void getIntersectedCellIndices(double[] lons, double[] lats, IntConsumer consumer) {
+    new PolygonRasterizer(this, lons, lats).rasterize(consumer);
+  }
+
+  /**
+   * Returns a stream of the dense cell indices of the cells intersected by the provided bounding box. The cells are
+   * generated on demand in the same order as by {@link #getIntersectedCells(double, double, double, double)}. When
+   * processed in parallel the stream is split by latitude rows.
+   *
+   * @param minX the minimum longitude of the bounding box
+   * @param minY the minimum latitude of the bounding box
+   * @param maxX the maximum longitude of the bounding box
+   * @param maxY the maximum latitude of the bounding box
+   * @return a stream of dense cell indices
+   */
+  public IntStream streamIntersectedCellIndices(double minX, double minY, double maxX, double maxY) {
+    return StreamSupport.intStream(intersectedCellsSpliterator(minX, minY, maxX, maxY), false);
+  }
+
+  /**
+   * Returns a stream of the cell identifiers of the cells intersected by the provided bounding box. In contrast to
+   * {@link #getIntersectedCells(double, double, double, double)} the cell identifiers are created on demand.
+   *
+   * @param minX the minimum longitude of the bounding box
+   * @param minY the minimum latitude of the bounding box
+   * @param maxX the maximum longitude of the bounding box
+   * @param maxY the maximum latitude of the bounding box
+   * @return a stream of cell identifiers
+   * @see #streamIntersectedCellIndices(double, double, double, double)
+   */
+  public Stream<Point> streamIntersectedCells(double minX, double minY, double maxX, double maxY) {
+    return streamIntersectedCellIndices(minX, minY, maxX, maxY).mapToObj(this::toCellId);
+  }
+
+  /**
+   * Provides the dense cell indices of the cells crossed by the provided polyline, e.g. a ground track, in the order
+   * they are crossed. The polyline is given by its longitude and latitude vertices. Consecutive duplicates are
+   * omitted, and a line passing exactly through a cell corner does not touch the cells beside the corner. Segments
+   * with a longitude jump of more than 180 degrees cross the anti-meridian. Latitudes are clipped to the grid bounds.
+   *
+   * @param lons     the longitudes of the polyline vertices
+   * @param lats     the latitudes of the polyline vertices
+   * @param consumer the consumer receiving the dense cell indices
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   */
+  public void getTraversedCellIndices(double[] lons, double[] lats, IntConsumer consumer) {
+    new PolylineTraverser(this, consumer).traverse(lons, lats);
+  }
+
+  /**
+   * Provides the cell identifiers of the cells crossed by the provided polyline in the order they are crossed.
+   *
+   * @param lons     the longitudes of the polyline vertices
+   * @param lats     the latitudes of the polyline vertices
+   * @param consumer the consumer receiving the cell identifiers
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   * @see #getTraversedCellIndices(double[], double[], IntConsumer)
+   */
+  public void getTraversedCells(double[] lons, double[] lats, Consumer<Point> consumer) {
+    getTraversedCellIndices(lons, lats, cellIndex -> consumer.accept(toCellId(cellIndex)));
+  }
+
+  /**
+   * Returns the number of cells intersected by the provided bounding box. The same rules as in
+   * {@link #getIntersectedCells(double, double, double, double)} apply, but the number is computed without generating
+   * the cells.
+   *
+   * @param minX the minimum longitude of the bounding box
+   * @param minY the minimum latitude of the bounding box
+   * @param maxX the maximum longitude of the bounding box
+   * @param maxY the maximum latitude of the bounding box
+   * @return the number of intersected cells
+   */
+  public int countIntersectedCells(double minX, double minY, double maxX, double maxY) {
+    Layout current = layout;
+    int numCols = current.numCols;
+    long block = intersectedBlock(current, minX, minY, maxX, maxY);
+    return blockRowCount(block, numCols) * blockColCount(block, numCols);
+  }
+
+  /**
+   * Checks whether the cells intersected by the two provided bounding boxes have at least one cell in common. This is
+   * the case if the bounding boxes overlap, but also if they only touch or lie in the same cell.
+   *
+   * @param minX1 the minimum longitude of the first bounding box
+   * @param minY1 the minimum latitude of the first bounding box
+   * @param maxX1 the maximum longitude of the first bounding box
+   * @param maxY1 the maximum latitude of the first bounding box
+   * @param minX2 the minimum longitude of the second bounding box
+   * @param minY2 the minimum latitude of the second bounding box
+   * @param maxX2 the maximum longitude of the second bounding box
+   * @param maxY2 the maximum latitude of the second bounding box
+   * @return true if at least one cell is intersected by both bounding boxes
+   * @see #getIntersectedCells(double, double, double, double)
+   */
+  public boolean intersectsAnyCell(double minX1, double minY1, double maxX1, double maxY1,
+      double minX2, double minY2, double maxX2, double maxY2) {
+    Layout current = layout;
+    int numCols = current.numCols;
+    long block1 = intersectedBlock(current, minX1, minY1, maxX1, maxY1);
+    long block2 = intersectedBlock(current, minX2, minY2, maxX2, maxY2);
+    if (blockRowCount(block1, numCols) == 0 || blockRowCount(block2, numCols) == 0) {
+      return false;
+    }
+    int firstRow1 = blockFirstIndex(block1) / numCols;
+    int firstRow2 = blockFirstIndex(block2) / numCols;
+    if (firstRow1 > blockLastIndex(block2) / numCols || firstRow2 > blockLastIndex(block1) / numCols) {
+      return false;
+    }
+    // the column ranges are intervals on a ring, they overlap if one starts within the other
+    int firstCol1 = blockFirstIndex(block1) % numCols;
+    int firstCol2 = blockFirstIndex(block2) % numCols;
+    return Math.floorMod(firstCol2 - firstCol1, numCols) < blockColCount(block1, numCols)
+        || Math.floorMod(firstCol1 - firstCol2, numCols) < blockColCount(block2, numCols);
+  }
+
+  private CellSpliterator intersectedCellsSpliterator(double minX, double minY, double maxX, double maxY) {
+    Layout current = layout;
+    int numCols = current.numCols;
+    long block = intersectedBlock(current, minX, minY, maxX, maxY);
+    int firstIndex = blockFirstIndex(block);
+    return new CellSpliterator(numCols, firstIndex / numCols, blockRowCount(block, numCols), firstIndex % numCols,
+        blockColCount(block, numCols));
+  }
+
+  /**
+   * Computes the block of cells intersected by the bounding box. The block is packed into a long holding the index of
+   * the upper left cell in the high and the index of the lower right cell in the low 32 bits. If the block covers all
+   * columns, the upper left cell is in the first and the lower right cell in the last column. An inverted bounding box,
+   * with <code>minY</code> greater than <code>maxY</code>, results in an empty block, which has no rows.
+   */
+  long intersectedBlock(double minX, double minY, double maxX, double maxY) {
+    return intersectedBlock(layout, minX, minY, maxX, maxY);
+  }
+
+  private long intersectedBlock(Layout current, double minX, double minY, double maxX, double maxY) {
+    int numCols = current.numCols;
+    if (minY > maxY) {
+      // the first cell is in the row after the last one
+      return (long) numCols << 32;
+    }
+    double lonWidth = maxX - minX;
+    if (lonWidth < 0) {
+      // minX > maxX denotes a bounding box crossing the anti-meridian
+      lonWidth += 360;
+    }
+    double east = normalizeLon(maxX);
+    if (lonWidth > 0 && (east == WEST_BOUND || east > EAST_BOUND - pixelSize / 2)) {
+      // the eastern edge on or within half a pixel of the anti-meridian belongs to the last column, the half-pixel
+      // adjustment would wrap it to the first one
+      east = EAST_BOUND - cellWidth / 2.0;
+    }
+    int ulIndex = getCellIndex(current, minX, Math.min(maxY, current.northBound));
+    int lrIndex = getCellIndex(current, east, Math.max(minY, current.southBound));
+    if (lonWidth >= getGridWidth()) {
+      ulIndex -= ulIndex % numCols;
+      lrIndex += numCols - 1 - lrIndex % numCols;
+    }
+    return (long) ulIndex << 32 | lrIndex;
+  }
+
+  static int blockFirstIndex(long block) {
+    return (int) (block >>> 32);
+  }
+
+  static int blockLastIndex(long block) {
+    return (int) block;
+  }
+
+  static int blockRowCount(long block, int numCols) {
+    return Math.max(blockLastIndex(block) / numCols - blockFirstIndex(block) / numCols + 1, 0);
+  }
+
+  static int blockColCount(long block, int numCols) {
+    return Math.floorMod(blockLastIndex(block) % numCols - blockFirstIndex(block) % numCols, numCols) + 1;
+  }
+
   /**
    * Returns a list of cell identifiers for the cells intersected by the bounding box defined by the provided longitude
    * start and width. In latitude the bounding box spans from the northern to the southern bound of the grid.
@@ -239,7 +658,7 @@ public class GlobalGrid {
    * @return a list of cell identifiers for the cells intersected by the bounding box
    */
   public List<Point> getGlobalCellIdStripe(int lonStart, int lonWidth) {
-    return getGlobalCellIdStripe(lonStart, lonWidth, northBound);
+    return getGlobalCellIdStripe(lonStart, lonWidth, NORTH_BOUND);
   }
 
   /**
@@ -253,9 +672,10 @@ public class GlobalGrid {
    * @return a list of cell identifiers for the cells intersected by the bounding box
    */
   public List<Point> getGlobalCellIdStripe(int lonStart, int lonWidth, int startLat) {
+    Layout current = layout;
     List<Point> cellIds = new ArrayList<>();
-    startLat = Math.min(startLat, northBound);
-    for (int lat = startLat; lat > southBound; lat -= cellHeight) {
+    startLat = Math.min(startLat, current.northBound);
+    for (int lat = startLat; lat > current.southBound; lat -= cellHeight) {
       for (int lon = lonStart; lon < lonStart + lonWidth; lon += cellWidth) {
         cellIds.add(new Point(lon, lat));
       }
@@ -263,6 +683,72 @@ public class GlobalGrid {
     return cellIds;
   }
 
+  /**
+   * Returns the number of cells in the stripe returned by {@link #getGlobalCellIdStripe(int, int)}, without creating
+   * the cell identifiers.
+   *
+   * @param lonStart the start longitude
+   * @param lonWidth the width of the bounding box
+   * @return the number of cells in the stripe
+   */
+  public int countStripeCells(int lonStart, int lonWidth) {
+    return countStripeCells(lonStart, lonWidth, NORTH_BOUND);
+  }
+
+  /**
+   * Returns the number of cells in the stripe returned by {@link #getGlobalCellIdStripe(int, int, int)}, without
+   * creating the cell identifiers.
+   *
+   * @param lonStart the start longitude
+   * @param lonWidth the width of the bounding box
+   * @param startLat the start latitude
+   * @return the number of cells in the stripe
+   */
+  public int countStripeCells(int lonStart, int lonWidth, int startLat) {
+    Layout current = layout;
+    int latHeight = Math.min(startLat, current.northBound) - current.southBound;
+    if (lonWidth <= 0 || latHeight <= 0) {
+      return 0;
+    }
+    return ((lonWidth + cellWidth - 1) / cellWidth) * ((latHeight + cellHeight - 1) / cellHeight);
+  }
+
+  /**
+   * Returns a stream of the dense cell indices of the cells covered by the stripe defined by the provided longitude
+   * start and width and the latitude start. The stripe spans from <code>startLat</code> to the southern bound of the
+   * grid. In contrast to {@link #getGlobalCellIdStripe(int, int, int)} longitudes beyond the anti-meridian wrap around
+   * and the stripe is limited to the width of the grid. When processed in parallel the stream is split by latitude
+   * rows.
+   *
+   * @param lonStart the start longitude
+   * @param lonWidth the width of the stripe
+   * @param startLat the start latitude
+   * @return a stream of dense cell indices
+   */
+  public IntStream streamGlobalCellIndexStripe(int lonStart, int lonWidth, int startLat) {
+    Layout current = layout;
+    int numCols = current.numCols;
+    int firstRow = (current.northBound - Math.min(startLat, current.northBound)) / cellHeight;
+    int firstCol = Math.floorMod(lonStart - WEST_BOUND, getGridWidth()) / cellWidth;
+    int colCount = Math.min((lonWidth + cellWidth - 1) / cellWidth, numCols);
+    return StreamSupport.intStream(
+        new CellSpliterator(numCols, firstRow, current.numRows - firstRow, firstCol, colCount), false);
+  }
+
+  /**
+   * Returns a stream of the cell identifiers of the cells covered by the stripe defined by the provided longitude start
+   * and width and the latitude start. The cell identifiers are created on demand.
+   *
+   * @param lonStart the start longitude
+   * @param lonWidth the width of the stripe
+   * @param startLat the start latitude
+   * @return a stream of cell identifiers
+   * @see #streamGlobalCellIndexStripe(int, int, int)
+   */
+  public Stream<Point> streamGlobalCellIdStripe(int lonStart, int lonWidth, int startLat) {
+    return streamGlobalCellIndexStripe(lonStart, lonWidth, startLat).mapToObj(this::toCellId);
+  }
+
   /**
    * Calculates the upper left corner of the cell which contains the provided latitude and longitude. The calculation is
    * done by dividing the coordinates by the tile width and height, flooring the result, multiplying it by the tile
@@ -278,36 +764,349 @@ public class GlobalGrid {
    * @see #isInGridBounds(double, double)
    */
   public Point getCellId(double lon, double lat) {
-    // consider the half-pixel offset which is already in the adjacent cell
-    double latDistance = getDistanceToBorder(lat, cellHeight);
-    if (latDistance > 0 && latDistance < (pixelSize / 2)) {
-      lat = lat - (pixelSize / 2);
+    lon = adjustLon(lon);
+    lat = adjustLat(lat);
+    Layout current = layout;
+    ensureInGridBounds(current, lon, lat);
+    return new Point(toCellX(lon), toCellY(current, lat));
+  }
+
+  /**
+   * Returns the dense cell index of the cell which contains the provided latitude and longitude. The same rules as in
+   * {@link #getCellId(double, double)} apply, but no object is created.
+   *
+   * @param lon the longitude
+   * @param lat the latitude
+   * @return the dense cell index
+   * @throws IllegalArgumentException if the longitude or latitude is outside the grid bounds
+   * @see #toCellIndex(int, int)
+   */
+  public int getCellIndex(double lon, double lat) {
+    return getCellIndex(layout, lon, lat);
+  }
+
+  private int getCellIndex(Layout current, double lon, double lat) {
+    lon = adjustLon(lon);
+    lat = adjustLat(lat);
+    ensureInGridBounds(current, lon, lat);
+    return toCellIndex(current, toCellX(lon), toCellY(current, lat));
+  }
+
+  /**
+   * Computes the dense cell index like {@link #getCellIndex(double, double)}, but returns {@link #NO_CELL_INDEX}
+   * instead of throwing an exception if the coordinate is outside the grid bounds.
+   */
+  int findCellIndex(double lon, double lat) {
+    return computeCellIndex(layout, lon, lat);
+  }
+
+  /**
+   * Computes the dense cell indices for the given longitude and latitude arrays. The same rules as in
+   * {@link #getCellId(double, double)} apply, but coordinates outside the grid bounds do not cause an exception.
+   * Instead {@link #NO_CELL_INDEX} is written for them.
+   *
+   * @param lons        the longitudes
+   * @param lats        the latitudes
+   * @param cellIndices the array receiving the dense cell indices
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   */
+  public void getCellIndices(double[] lons, double[] lats, int[] cellIndices) {
+    if (lons.length != lats.length || lons.length != cellIndices.length) {
+      throw new IllegalArgumentException("Longitude, latitude and cell index arrays must be of the same length");
+    }
+    Layout current = layout;
+    for (int i = 0; i < cellIndices.length; i++) {
+      cellIndices[i] = computeCellIndex(current, lons[i], lats[i]);
+    }
+  }
+
+  /**
+   * Computes the dense cell indices for coordinates stored interleaved in a single buffer. The longitude of the i-th
+   * coordinate is read from <code>coords[offset + i * stride]</code> and the latitude from the element directly
+   * following it. The same rules as in {@link #getCellIndices(double[], double[], int[])} apply.
+   *
+   * @param coords      the buffer containing the interleaved coordinates
+   * @param offset      the position of the first longitude in the buffer
+   * @param stride      the distance between two consecutive longitudes, at least 2
+   * @param cellIndices the array receiving the dense cell indices
+   * @param count       the number of coordinates to process
+   * @throws IllegalArgumentException if the stride is smaller than 2 or the arrays are too small
+   */
+  public void getCellIndices(double[] coords, int offset, int stride, int[] cellIndices, int count) {
+    if (stride < 2) {
+      throw new IllegalArgumentException("Stride must be at least 2");
+    }
+    if (count > cellIndices.length || (count > 0 && offset + (count - 1) * stride + 1 >= coords.length)) {
+      throw new IllegalArgumentException("Coordinate or cell index array is too small for " + count + " coordinates");
     }
+    Layout current = layout;
+    for (int i = 0, pos = offset; i < count; i++, pos += stride) {
+      cellIndices[i] = computeCellIndex(current, coords[pos], coords[pos + 1]);
+    }
+  }
+
+  /**
+   * Locates the pixel containing the provided latitude and longitude. The cell is determined by the same rules as in
+   * {@link #getCellId(double, double)}, and the pixel within the cell raster is consistent with them: the pixel
+   * centered on the upper left corner of the cell is the first pixel of the cell raster.
+   *
+   * @param lon    the longitude
+   * @param lat    the latitude
+   * @param result the object receiving the location, can be reused for many calls
+   * @return the provided result object
+   * @throws IllegalArgumentException if the longitude or latitude is outside the grid bounds
+   * @see #getCellRasterWidth()
+   * @see #getCellRasterHeight()
+   */
+  public CellPixel locate(double lon, double lat, CellPixel result) {
+    double adjustedLon = adjustLon(lon);
+    double adjustedLat = adjustLat(lat);
+    Layout current = layout;
+    ensureInGridBounds(current, adjustedLon, adjustedLat);
+    int cellX = toCellX(adjustedLon);
+    int cellY = toCellY(current, adjustedLat);
+    int rasterWidth = getCellRasterWidth();
+    int pixelX = toPixel(GeoUtils.wrapDelta(lon - cellX), rasterWidth);
+    int pixelY = toPixel(cellY - lat, getCellRasterHeight());
+    result.set(toCellIndex(current, cellX, cellY), pixelX, pixelY, pixelY * rasterWidth + pixelX);
+    return result;
+  }
+
+  /**
+   * Locates the pixels for the given longitude and latitude arrays. For each coordinate the dense cell index and the
+   * linear offset of the pixel in a row-major buffer of the cell raster are written. The same rules as in
+   * {@link #locate(double, double, CellPixel)} apply, but coordinates outside the grid bounds do not cause an
+   * exception. Instead {@link #NO_CELL_INDEX} is written as cell index and -1 as offset.
+   *
+   * @param lons         the longitudes
+   * @param lats         the latitudes
+   * @param cellIndices  the array receiving the dense cell indices
+   * @param pixelOffsets the array receiving the pixel offsets
+   * @throws IllegalArgumentException if the arrays are not of the same length
+   */
+  public void locate(double[] lons, double[] lats, int[] cellIndices, int[] pixelOffsets) {
+    if (lons.length != lats.length || lons.length != cellIndices.length || lons.length != pixelOffsets.length) {
+      throw new IllegalArgumentException("All arrays must be of the same length");
+    }
+    Layout current = layout;
+    int numCols = current.numCols;
+    int northBound = current.northBound;
+    int rasterWidth = getCellRasterWidth();
+    int rasterHeight = getCellRasterHeight();
+    for (int i = 0; i < lons.length; i++) {
+      double lon = adjustLon(lons[i]);
+      double lat = adjustLat(lats[i]);
+      if (!isInGridBounds(current, lon, lat)) {
+        cellIndices[i] = NO_CELL_INDEX;
+        pixelOffsets[i] = -1;
+        continue;
+      }
+      int cellX = toCellX(lon);
+      int cellY = toCellY(current, lat);
+      cellIndices[i] = (northBound - cellY) / cellHeight * numCols + (cellX - WEST_BOUND) / cellWidth;
+      pixelOffsets[i] = toPixel(cellY - lats[i], rasterHeight) * rasterWidth
+          + toPixel(GeoUtils.wrapDelta(lons[i] - cellX), rasterWidth);
+    }
+  }
+
+  /**
+   * Returns the transformation between the pixel coordinates of the raster of the given cell and longitude and
+   * latitude. The transformations are created on first use and shared afterward.
+   *
+   * @param cellIndex the dense cell index
+   * @return the geo-transformation of the cell
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   * @see #locate(double, double, CellPixel)
+   */
+  public CellGeoTransform getGeoTransform(int cellIndex) {
+    Layout current = layout;
+    ensureValidIndex(current, cellIndex);
+    CellGeoTransform[] transforms = current.geoTransforms;
+    if (transforms == null) {
+      transforms = new CellGeoTransform[current.cellCount];
+      current.geoTransforms = transforms;
+    }
+    CellGeoTransform transform = transforms[cellIndex];
+    if (transform == null) {
+      // transforms are immutable, so a concurrently created duplicate does no harm
+      transform = new CellGeoTransform(cellIndex, current.cellXs[cellIndex % current.numCols],
+          current.cellYs[cellIndex / current.numCols], pixelSize, getCellRasterWidth(), getCellRasterHeight());
+      transforms[cellIndex] = transform;
+    }
+    return transform;
+  }
+
+  private int toPixel(double distanceFromCorner, int rasterSize) {
+    // pixels are centered on the cell corner, coordinates closer than half a pixel to the next cell are already in it;
+    // the distance is measured from the unadjusted coordinate, so it is negative for those
+    int pixel = (int) Math.floor(distanceFromCorner / pixelSize + 0.5);
+    return Math.min(Math.max(pixel, 0), rasterSize - 1);
+  }
+
+  private int computeCellIndex(Layout current, double lon, double lat) {
+    lon = adjustLon(lon);
+    lat = adjustLat(lat);
+    if (!isInGridBounds(current, lon, lat)) {
+      return NO_CELL_INDEX;
+    }
+    int col = (toCellX(lon) - WEST_BOUND) / cellWidth;
+    int row = (current.northBound - toCellY(current, lat)) / cellHeight;
+    return row * current.numCols + col;
+  }
+
+  /**
+   * Returns the number of cell columns of the grid.
+   *
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return layout.numCols;
+  }
+
+  /**
+   * Returns the number of cell rows of the grid.
+   *
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return layout.numRows;
+  }
+
+  /**
+   * Returns the number of cells in the grid.
+   *
+   * @return the number of cells
+   */
+  public int getCellCount() {
+    return layout.cellCount;
+  }
+
+  /**
+   * Converts a cell identifier into the dense cell index. The index is row-major, starting with 0 at the upper left
+   * cell of the grid and ending with {@link #getCellCount()} - 1 at the lower right cell. The x coordinate is
+   * normalized, so that 180 is equivalent to -180.
+   *
+   * @param cellX the longitude of the upper left corner of the cell
+   * @param cellY the latitude of the upper left corner of the cell
+   * @return the dense cell index
+   * @throws IllegalArgumentException if the cell is not within the grid bounds
+   */
+  public int toCellIndex(int cellX, int cellY) {
+    return toCellIndex(layout, cellX, cellY);
+  }
+
+  private int toCellIndex(Layout current, int cellX, int cellY) {
+    if (cellY < current.southBound + cellHeight || cellY > current.northBound) {
+      throw new IllegalArgumentException(
+          String.format("Cell-Y must be between %d and %d", current.southBound + cellHeight, current.northBound));
+    }
+    int col = Math.floorMod(cellX - WEST_BOUND, getGridWidth()) / cellWidth;
+    int row = (current.northBound - cellY) / cellHeight;
+    return row * current.numCols + col;
+  }
+
+  /**
+   * Converts a cell identifier into the dense cell index.
+   *
+   * @param cellId the cell identifier
+   * @return the dense cell index
+   * @throws IllegalArgumentException if the cell is not within the grid bounds
+   * @see #toCellIndex(int, int)
+   */
+  public int toCellIndex(Point cellId) {
+    return toCellIndex(cellId.x, cellId.y);
+  }
+
+  /**
+   * Converts the dense cell index into a cell identifier.
+   *
+   * @param cellIndex the dense cell index
+   * @return a Point object representing the upper left corner of the cell
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   */
+  public Point toCellId(int cellIndex) {
+    Layout current = layout;
+    ensureValidIndex(current, cellIndex);
+    return new Point(current.cellXs[cellIndex % current.numCols], current.cellYs[cellIndex / current.numCols]);
+  }
+
+  /**
+   * Returns the longitude of the upper left corner of the cell with the given dense cell index.
+   *
+   * @param cellIndex the dense cell index
+   * @return the longitude of the upper left corner
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   */
+  public int getCellX(int cellIndex) {
+    Layout current = layout;
+    ensureValidIndex(current, cellIndex);
+    return current.cellXs[cellIndex % current.numCols];
+  }
+
+  /**
+   * Returns the latitude of the upper left corner of the cell with the given dense cell index.
+   *
+   * @param cellIndex the dense cell index
+   * @return the latitude of the upper left corner
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   */
+  public int getCellY(int cellIndex) {
+    Layout current = layout;
+    ensureValidIndex(current, cellIndex);
+    return current.cellYs[cellIndex / current.numCols];
+  }
+
+  private double adjustLon(double lon) {
+    // consider the half-pixel offset which is already in the adjacent cell
     double lonDistance = getDistanceToBorder(lon, cellWidth);
     if (lonDistance > 0 && lonDistance < (pixelSize / 2)) {
       lon = lon + (pixelSize / 2);
     }
     // convert longitude to range -180 to 180, so that it wraps around the globe
-    lon = normalizeLon(lon);
-    // convert latitude to range -90 to 90, so that it is clipped at the poles
-    lat = clipLat(lat);
-    if (!isInGridBounds(lon, lat)) {
-      throw new IllegalArgumentException(
-          String.format("Cell-X must be between %d and %d, Cell-Y must be between %d and %d",
-              WEST_BOUND, EAST_BOUND, southBound, northBound));
+    return normalizeLon(lon);
+  }
+
+  private double adjustLat(double lat) {
+    // consider the half-pixel offset which is already in the adjacent cell
+    double latDistance = getDistanceToBorder(lat, cellHeight);
+    if (latDistance > 0 && latDistance < (pixelSize / 2)) {
+      lat = lat - (pixelSize / 2);
     }
-    int x = (int) Math.floor((lon + 180) % 360 / cellWidth) * cellWidth - 180;
+    // convert latitude to range -90 to 90, so that it is clipped at the poles
+    return clipLat(lat);
+  }
+
+  private int toCellX(double normalizedLon) {
+    return (int) Math.floor((normalizedLon + 180) % 360 / cellWidth) * cellWidth - 180;
+  }
+
+  private int toCellY(Layout current, double clippedLat) {
     int y;
-    if (lat < 0) {
-      y = ((int) Math.floor((lat * -1) / cellHeight) * cellHeight) * -1;
-      if (y == southBound) {
+    if (clippedLat < 0) {
+      y = ((int) Math.floor((clippedLat * -1) / cellHeight) * cellHeight) * -1;
+      if (y == current.southBound) {
         // Special case for the south pole
-        y = southBound + cellHeight;
+        y = current.southBound + cellHeight;
       }
     } else {
-      y = ((int) Math.ceil(lat / cellHeight) * cellHeight);
+      y = ((int) Math.ceil(clippedLat / cellHeight) * cellHeight);
+    }
+    return y;
+  }
+
+  private static void ensureInGridBounds(Layout current, double lon, double lat) {
+    if (!isInGridBounds(current, lon, lat)) {
+      throw new IllegalArgumentException(
+          String.format("Cell-X must be between %d and %d, Cell-Y must be between %d and %d",
+              WEST_BOUND, EAST_BOUND, current.southBound, current.northBound));
+    }
+  }
+
+  private static void ensureValidIndex(Layout current, int cellIndex) {
+    if (cellIndex < 0 || cellIndex >= current.cellCount) {
+      throw new IllegalArgumentException(
+          String.format("Cell index must be between 0 and %d", current.cellCount - 1));
     }
-    return new Point(x, y);
   }
 
   private double getDistanceToBorder(double ordinate, int cellSpan) {
@@ -325,9 +1124,10 @@ public class GlobalGrid {
    * @return an array of Point objects representing the upper left corner of each cell in the grid
    */
   public Point[] getAllIds() {
-    Point[] cellPositions = new Point[(getGridWidth() / cellWidth) * (getGridHeight() / cellHeight)];
+    Layout current = layout;
+    Point[] cellPositions = new Point[current.cellCount];
     int i = 0;
-    for (int lat = northBound; lat > southBound; lat -= cellHeight) {
+    for (int lat = current.northBound; lat > current.southBound; lat -= cellHeight) {
       for (int lon = WEST_BOUND; lon < EAST_BOUND; lon += cellWidth) {
         cellPositions[i++] = new Point(lon, lat);
       }
@@ -335,6 +1135,40 @@ public class GlobalGrid {
     return cellPositions;
   }
 
+  /**
+   * Returns an array of the dense cell indices of all cells in the grid, in the same order as {@link #getAllIds()}.
+   *
+   * @return an array of dense cell indices
+   */
+  public int[] getAllCellIndices() {
+    int[] cellIndices = new int[getCellCount()];
+    for (int i = 0; i < cellIndices.length; i++) {
+      cellIndices[i] = i;
+    }
+    return cellIndices;
+  }
+
+  /**
+   * Returns a stream of the dense cell indices of all cells in the grid. The indices are generated on demand and, when
+   * processed in parallel, the stream is split by latitude rows.
+   *
+   * @return a stream of dense cell indices
+   */
+  public IntStream streamAllCellIndices() {
+    Layout current = layout;
+    return StreamSupport.intStream(new CellSpliterator(current.numCols, 0, current.numRows, 0, current.numCols), false);
+  }
+
+  /**
+   * Returns a stream of all cell identifiers in the grid, in the same order as {@link #getAllIds()}. In contrast to
+   * {@link #getAllIds()} the cell identifiers are created on demand.
+   *
+   * @return a stream of cell identifiers
+   */
+  public Stream<Point> streamAllIds() {
+    return streamAllCellIndices().mapToObj(this::toCellId);
+  }
+
   /**
    * Returns an array of the cell positions surrounding the given longitude and latitude.
    *
@@ -343,11 +1177,7 @@ public class GlobalGrid {
    * @return an array of cell ids
    */
   public Point[] getSurroundingCellIds(double lon, double lat) {
-    if (!isInGridBounds(lon, lat)) {
-      throw new IllegalArgumentException(
-          String.format("Cell-X must be between %d and %d, Cell-Y must be between %d and %d",
-              WEST_BOUND, EAST_BOUND, southBound, northBound));
-    }
+    ensureInGridBounds(layout, lon, lat);
     return getSurroundingCellIds(getCellId(lon, lat));
   }
 
@@ -359,9 +1189,10 @@ public class GlobalGrid {
    * @return an array of Point objects representing the upper left corner of each cell in the grid
    */
   public Point[] getSurroundingCellIds(Point cellId) {
-    if (cellId.y < southBound + cellHeight || cellId.y > northBound) {
-      throw new IllegalArgumentException(String.format("Cell-Y must be between %d and %d", southBound + cellHeight,
-          northBound));
+    Layout current = layout;
+    if (cellId.y < current.southBound + cellHeight || cellId.y > current.northBound) {
+      throw new IllegalArgumentException(
+          String.format("Cell-Y must be between %d and %d", current.southBound + cellHeight, current.northBound));
     }
     if (cellId.x < WEST_BOUND || cellId.x > EAST_BOUND) {
       throw new IllegalArgumentException(String.format("Cell-X must be between %d and %d", WEST_BOUND, EAST_BOUND));
@@ -375,19 +1206,109 @@ public class GlobalGrid {
       // convert longitude to range -180 to 180, so that it wraps around the globe
       cellX = (int) normalizeLon(cellX);
       // clip to latitude bounds
-      cellY = (int) clipCellY(cellY);
+      cellY = (int) clipCellY(current, cellY);
       cellIds.add(new Point(cellX, cellY));
     }
     return cellIds.toArray(new Point[0]);
   }
 
+  /**
+   * Writes the dense cell indices of the cells surrounding the given cell, including the cell itself, into the provided
+   * array. The indices are ordered from the upper left corner to the lower right corner. At the anti-meridian the
+   * cells wrap around and at the grid bounds they are clipped, in which case duplicates are omitted and fewer than 9
+   * indices are written.
+   *
+   * @param cellIndex the dense cell index for which the surrounding cells are to be calculated
+   * @param result    the array receiving the indices, must have a length of at least 9
+   * @return the number of indices written to the array
+   * @throws IllegalArgumentException if the index is not a valid cell index or the array is too small
+   */
+  public int getSurroundingCellIndices(int cellIndex, int[] result) {
+    Layout current = layout;
+    ensureValidIndex(current, cellIndex);
+    if (result.length < 9) {
+      throw new IllegalArgumentException("Result array must have a length of at least 9");
+    }
+    int numCols = current.numCols;
+    int maxRow = current.numRows - 1;
+    int row = cellIndex / numCols;
+    int col = cellIndex % numCols;
+    int count = 0;
+    for (int i = 0; i < 9; i++) {
+      int cellRow = Math.min(Math.max(row - 1 + i / 3, 0), maxRow);
+      int cellCol = Math.floorMod(col - 1 + i % 3, numCols);
+      int index = cellRow * numCols + cellCol;
+      if (!contains(result, count, index)) {
+        result[count++] = index;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Calculates the great-circle distance from the given location to the nearest point of the cell with the given dense
+   * cell index. If the location is inside the cell the distance is 0.
+   *
+   * @param lon       the longitude
+   * @param lat       the latitude
+   * @param cellIndex the dense cell index
+   * @return the distance in kilometres
+   * @throws IllegalArgumentException if the index is not a valid cell index
+   */
+  public double getCellDistance(double lon, double lat, int cellIndex) {
+    Layout current = layout;
+    ensureValidIndex(current, cellIndex);
+    int numCols = current.numCols;
+    return new ProximitySearch(this, lon, lat).cellDistance(cellIndex / numCols, cellIndex % numCols);
+  }
+
+  /**
+   * Provides the dense cell indices of all cells which are at most the given great-circle distance away from the given
+   * location to the consumer. The distance is measured to the nearest point of a cell, so the cell containing the
+   * location is always provided. The cells are provided in no particular order. Only the cells close to the location
+   * are examined, not the whole grid.
+   *
+   * @param lon      the longitude
+   * @param lat      the latitude
+   * @param radiusKm the maximum distance in kilometres
+   * @param consumer the consumer receiving the dense cell indices
+   * @see #getCellDistance(double, double, int)
+   */
+  public void getCellIndicesWithinRadius(double lon, double lat, double radiusKm, IntConsumer consumer) {
+    new ProximitySearch(this, lon, lat).withinRadius(radiusKm, consumer);
+  }
+
+  /**
+   * Returns the dense cell indices of the <code>k</code> cells nearest to the given location, ordered by their
+   * great-circle distance. The distance is measured to the nearest point of a cell. Cells with the same distance are
+   * ordered by their index. Only the cells close to the location are examined, not the whole grid.
+   *
+   * @param lon the longitude
+   * @param lat the latitude
+   * @param k   the number of cells, limited by the number of cells in the grid
+   * @return the dense cell indices of the nearest cells
+   * @see #getCellDistance(double, double, int)
+   */
+  public int[] getNearestCellIndices(double lon, double lat, int k) {
+    return new ProximitySearch(this, lon, lat).nearest(k);
+  }
+
+  private static boolean contains(int[] values, int length, int value) {
+    for (int i = 0; i < length; i++) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
 
   private static double clipLat(double lat) {
     return Math.min(Math.max(lat, -90), 90);
   }
 
-  private double clipCellY(int cellY) {
-    return Math.min(Math.max(cellY, southBound + cellHeight), northBound);
+  private double clipCellY(Layout current, int cellY) {
+    return Math.min(Math.max(cellY, current.southBound + cellHeight), current.northBound);
   }
 
   private static double normalizeLon(double lon) {
@@ -399,4 +1320,38 @@ public class GlobalGrid {
     }
     return lon;
   }
+
+  /**
+   * The grid bounds and the values derived from them. A new layout is created whenever the bounds change. Each
+   * public method reads the layout only once and passes it on, so a method sees consistent bounds even if they are
+   * changed concurrently. Consecutive calls may see different bounds, unless the grid is immutable.
+   */
+  private static final class Layout {
+
+    private final int northBound;
+    private final int southBound;
+    private final int numCols;
+    private final int numRows;
+    private final int cellCount;
+    private final int[] cellXs;
+    private final int[] cellYs;
+    private volatile String[] cellIdStrings;
+    private volatile CellGeoTransform[] geoTransforms;
+
+    private Layout(int cellWidth, int cellHeight, int northBound, int southBound) {
+      this.northBound = northBound;
+      this.southBound = southBound;
+      this.numCols = (EAST_BOUND - WEST_BOUND) / cellWidth;
+      this.numRows = (northBound - southBound) / cellHeight;
+      this.cellCount = numCols * numRows;
+      this.cellXs = new int[numCols];
+      for (int col = 0; col < numCols; col++) {
+        cellXs[col] = WEST_BOUND + col * cellWidth;
+      }
+      this.cellYs = new int[Math.max(numRows, 0)];
+      for (int row = 0; row < numRows; row++) {
+        cellYs[row] = northBound - row * cellHeight;
+      }
+    }
+  }
 }
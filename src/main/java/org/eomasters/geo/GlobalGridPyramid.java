@@ -0,0 +1,225 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Ties several {@link GlobalGrid}s of different resolution together to a pyramid. Level 0 is the coarsest grid, each
+ * following level must subdivide the cells of the previous level into an integer number of cells, and all levels must
+ * have the same grid bounds. Cells are addressed by their dense cell index within a level, and navigating between the
+ * levels only requires integer arithmetic.
+ */
+public class GlobalGridPyramid {
+
+  private final GlobalGrid[] levels;
+  private final int[] colRatios;
+  private final int[] rowRatios;
+
+  /**
+   * Creates a pyramid of the given grids, ordered from the coarsest to the finest. The grids are converted into
+   * immutable grids, so that later changes of their bounds do not affect the pyramid.
+   *
+   * @param levels the grids of the pyramid levels
+   * @throws IllegalArgumentException if no grid is given, the bounds differ or a cell size does not subdivide the cell
+   *                                  size of the previous level
+   */
+  public GlobalGridPyramid(GlobalGrid... levels) {
+    if (levels.length == 0) {
+      throw new IllegalArgumentException("At least one level must be given");
+    }
+    this.levels = new GlobalGrid[levels.length];
+    this.colRatios = new int[levels.length];
+    this.rowRatios = new int[levels.length];
+    colRatios[0] = 1;
+    rowRatios[0] = 1;
+    for (int i = 0; i < levels.length; i++) {
+      this.levels[i] = levels[i].toImmutable();
+      if (i > 0) {
+        GlobalGrid coarse = this.levels[i - 1];
+        GlobalGrid fine = this.levels[i];
+        if (coarse.getNorthBound() != fine.getNorthBound() || coarse.getSouthBound() != fine.getSouthBound()) {
+          throw new IllegalArgumentException("All levels must have the same grid bounds");
+        }
+        colRatios[i] = ratio(coarse.getCellWidth(), fine.getCellWidth(), i);
+        rowRatios[i] = ratio(coarse.getCellHeight(), fine.getCellHeight(), i);
+      }
+    }
+  }
+
+  /**
+   * Creates a pyramid of global grids with square cells of the given sizes.
+   *
+   * @param pixelSize the size of each pixel in degrees, used for all levels
+   * @param cellSizes the cell sizes in degrees, ordered from the coarsest to the finest level
+   * @return the pyramid
+   * @throws IllegalArgumentException if a cell size does not subdivide the cell size of the previous level
+   */
+  public static GlobalGridPyramid create(double pixelSize, int... cellSizes) {
+    GlobalGrid[] grids = new GlobalGrid[cellSizes.length];
+    for (int i = 0; i < cellSizes.length; i++) {
+      grids[i] = GlobalGrid.createImmutable(cellSizes[i], cellSizes[i], pixelSize, 90, -90);
+    }
+    return new GlobalGridPyramid(grids);
+  }
+
+  private static int ratio(double coarseSize, double fineSize, int level) {
+    if (fineSize > coarseSize || coarseSize % fineSize != 0) {
+      throw new IllegalArgumentException(
+          String.format("Cell size of level %d must subdivide the cell size of level %d", level, level - 1));
+    }
+    return (int) (coarseSize / fineSize);
+  }
+
+  /**
+   * Returns the number of levels.
+   *
+   * @return the number of levels
+   */
+  public int getLevelCount() {
+    return levels.length;
+  }
+
+  /**
+   * Returns the grid of the given level.
+   *
+   * @param level the level, 0 is the coarsest
+   * @return the grid
+   */
+  public GlobalGrid getLevel(int level) {
+    return levels[level];
+  }
+
+  /**
+   * Returns the dense cell index of the parent cell on the next coarser level.
+   *
+   * @param level     the level of the cell
+   * @param cellIndex the dense cell index
+   * @return the dense cell index of the parent cell on level <code>level - 1</code>
+   * @throws IllegalArgumentException if the level is the coarsest level
+   */
+  public int parent(int level, int cellIndex) {
+    if (level <= 0) {
+      throw new IllegalArgumentException("The coarsest level has no parent");
+    }
+    return ancestorAtLevel(level, cellIndex, level - 1);
+  }
+
+  /**
+   * Returns the dense cell index of the cell on the given coarser level which contains the given cell.
+   *
+   * @param level       the level of the cell
+   * @param cellIndex   the dense cell index
+   * @param targetLevel the coarser level, less than or equal to <code>level</code>
+   * @return the dense cell index of the ancestor cell on the target level
+   * @throws IllegalArgumentException if the target level is finer than the level of the cell
+   */
+  public int ancestorAtLevel(int level, int cellIndex, int targetLevel) {
+    if (targetLevel > level || targetLevel < 0) {
+      throw new IllegalArgumentException("Target level must be between 0 and " + level);
+    }
+    int numCols = levels[level].getColumnCount();
+    int row = cellIndex / numCols;
+    int col = cellIndex % numCols;
+    for (int i = level; i > targetLevel; i--) {
+      row /= rowRatios[i];
+      col /= colRatios[i];
+    }
+    return row * levels[targetLevel].getColumnCount() + col;
+  }
+
+  /**
+   * Returns the number of children of each cell of the given level.
+   *
+   * @param level the level of the cells
+   * @return the number of child cells on level <code>level + 1</code>
+   * @throws IllegalArgumentException if the level is the finest level
+   */
+  public int getChildCount(int level) {
+    ensureNotFinest(level);
+    return colRatios[level + 1] * rowRatios[level + 1];
+  }
+
+  /**
+   * Writes the dense cell indices of the child cells on the next finer level into the provided array. The children are
+   * ordered from the upper left corner to the lower right corner.
+   *
+   * @param level     the level of the cell
+   * @param cellIndex the dense cell index
+   * @param result    the array receiving the indices, must have a length of at least {@link #getChildCount(int)}
+   * @return the number of indices written to the array
+   * @throws IllegalArgumentException if the level is the finest level
+   */
+  public int children(int level, int cellIndex, int[] result) {
+    ensureNotFinest(level);
+    int rowRatio = rowRatios[level + 1];
+    int colRatio = colRatios[level + 1];
+    int numCols = levels[level].getColumnCount();
+    int childCols = levels[level + 1].getColumnCount();
+    int firstRow = cellIndex / numCols * rowRatio;
+    int firstCol = cellIndex % numCols * colRatio;
+    int count = 0;
+    for (int row = firstRow; row < firstRow + rowRatio; row++) {
+      for (int col = firstCol; col < firstCol + colRatio; col++) {
+        result[count++] = row * childCols + col;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Provides the dense cell indices of all cells on the given finer level which are contained in the given cell to the
+   * consumer. The cells are provided row by row from the upper left corner to the lower right corner.
+   *
+   * @param level       the level of the cell
+   * @param cellIndex   the dense cell index
+   * @param targetLevel the finer level, greater than or equal to <code>level</code>
+   * @param consumer    the consumer receiving the dense cell indices
+   * @throws IllegalArgumentException if the target level is coarser than the level of the cell
+   */
+  public void descendants(int level, int cellIndex, int targetLevel, IntConsumer consumer) {
+    if (targetLevel < level || targetLevel >= levels.length) {
+      throw new IllegalArgumentException(
+          String.format("Target level must be between %d and %d", level, levels.length - 1));
+    }
+    int numCols = levels[level].getColumnCount();
+    int firstRow = cellIndex / numCols;
+    int firstCol = cellIndex % numCols;
+    int rowCount = 1;
+    int colCount = 1;
+    for (int i = level + 1; i <= targetLevel; i++) {
+      firstRow *= rowRatios[i];
+      firstCol *= colRatios[i];
+      rowCount *= rowRatios[i];
+      colCount *= colRatios[i];
+    }
+    int targetCols = levels[targetLevel].getColumnCount();
+    for (int row = firstRow; row < firstRow + rowCount; row++) {
+      for (int col = firstCol; col < firstCol + colCount; col++) {
+        consumer.accept(row * targetCols + col);
+      }
+    }
+  }
+
+  private void ensureNotFinest(int level) {
+    if (level >= levels.length - 1) {
+      throw new IllegalArgumentException("The finest level has no children");
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.geo;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Determines the cells of a {@link GlobalGrid} touched by a polygon. The polygon is processed row by row. Within a row
+ * the cells touched by the polygon edges are marked, and the cells in between are filled by the even-odd rule
+ * evaluated on the middle scanline of the row.
+ */
+final class PolygonRasterizer {
+
+  private final GlobalGrid grid;
+  private final double[] lons;
+  private final double[] lats;
+  private final int numCols;
+  private final int cellWidth;
+  private final int cellHeight;
+  private final boolean[] marked;
+  private final double[] crossings;
+
+  PolygonRasterizer(GlobalGrid grid, double[] lons, double[] lats) {
+    if (lons.length != lats.length) {
+      throw new IllegalArgumentException("Longitude and latitude arrays must be of the same length");
+    }
+    if (lons.length < 3) {
+      throw new IllegalArgumentException("A polygon must have at least 3 vertices");
+    }
+    this.grid = grid;
+    this.lons = unwrapLongitudes(lons);
+    this.lats = lats;
+    this.numCols = grid.getColumnCount();
+    this.cellWidth = (int) grid.getCellWidth();
+    this.cellHeight = (int) grid.getCellHeight();
+    this.marked = new boolean[numCols];
+    this.crossings = new double[lons.length];
+  }
+
+  void rasterize(IntConsumer consumer) {
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    for (double lat : lats) {
+      minLat = Math.min(minLat, lat);
+      maxLat = Math.max(maxLat, lat);
+    }
+    int northBound = grid.getNorthBound();
+    int firstRow = Math.max((int) Math.floor((northBound - maxLat) / cellHeight), 0);
+    int lastRow = Math.min((int) Math.ceil((northBound - minLat) / cellHeight) - 1, grid.getRowCount() - 1);
+    lastRow = Math.max(lastRow, Math.min(firstRow, grid.getRowCount() - 1));
+    for (int row = firstRow; row <= lastRow; row++) {
+      double top = northBound - row * (double) cellHeight;
+      double bottom = top - cellHeight;
+      Arrays.fill(marked, false);
+      markEdges(bottom, top);
+      markInterior(top - cellHeight / 2.0);
+      int rowOffset = row * numCols;
+      for (int col = 0; col < numCols; col++) {
+        if (marked[col]) {
+          consumer.accept(rowOffset + col);
+        }
+      }
+    }
+  }
+
+  private void markEdges(double bottom, double top) {
+    int n = lons.length;
+    for (int i = 0; i < n; i++) {
+      int j = (i + 1) % n;
+      double x1 = lons[i];
+      double y1 = lats[i];
+      double x2 = lons[j];
+      double y2 = lats[j];
+      double minRowY = Math.min(y1, y2);
+      double maxRowY = Math.max(y1, y2);
+      if (y1 == y2) {
+        // horizontal edges on the row border only touch the row
+        if (y1 > bottom && y1 < top) {
+          markColumns(Math.min(x1, x2), Math.max(x1, x2));
+        }
+      } else if (maxRowY > bottom && minRowY < top) {
+        double xa = interpolateX(x1, y1, x2, y2, Math.max(minRowY, bottom));
+        double xb = interpolateX(x1, y1, x2, y2, Math.min(maxRowY, top));
+        markColumns(Math.min(xa, xb), Math.max(xa, xb));
+      }
+    }
+  }
+
+  private void markInterior(double scanLat) {
+    int count = 0;
+    int n = lons.length;
+    for (int i = 0; i < n; i++) {
+      int j = (i + 1) % n;
+      if ((lats[i] > scanLat) != (lats[j] > scanLat)) {
+        crossings[count++] = interpolateX(lons[i], lats[i], lons[j], lats[j], scanLat);
+      }
+    }
+    Arrays.sort(crossings, 0, count);
+    for (int i = 0; i + 1 < count; i += 2) {
+      markColumns(crossings[i], crossings[i + 1]);
+    }
+  }
+
+  private void markColumns(double minLon, double maxLon) {
+    double start = (minLon + 180) / cellWidth;
+    double end = (maxLon + 180) / cellWidth;
+    if (start == end && start == Math.floor(start)) {
+      // a vertical line on a cell border does not cover an area of either cell
+      return;
+    }
+    int firstCol = (int) Math.floor(start);
+    int lastCol = Math.max(firstCol, (int) Math.ceil(end) - 1);
+    if (lastCol - firstCol + 1 >= numCols) {
+      Arrays.fill(marked, true);
+      return;
+    }
+    for (int col = firstCol; col <= lastCol; col++) {
+      marked[Math.floorMod(col, numCols)] = true;
+    }
+  }
+
+  private static double interpolateX(double x1, double y1, double x2, double y2, double y) {
+    return x1 + (y - y1) * (x2 - x1) / (y2 - y1);
+  }
+
+  private static double[] unwrapLongitudes(double[] lons) {
+    double[] unwrapped = GeoUtils.unwrapLongitudes(lons);
+    double closing = unwrapped[lons.length - 1] + GeoUtils.wrapDelta(lons[0] - lons[lons.length - 1]);
+    if (Math.abs(closing - unwrapped[0]) > 180) {
+      throw new IllegalArgumentException("Polygons enclosing a pole are not supported");
+    }
+    return unwrapped;
+  }
+}
@@ -0,0 +1,150 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.geo;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Walks a polyline through the cells of a {@link GlobalGrid}. Each segment is traversed incrementally with the grid
+ * traversal algorithm by Amanatides and Woo, which steps from one cell border to the next, so the effort is
+ * proportional to the number of crossed cells.
+ */
+final class PolylineTraverser {
+
+  // tolerance for detecting that a segment passes through a cell corner
+  private static final double EPSILON = 1.0e-9;
+
+  private final int numCols;
+  private final int maxRow;
+  private final int cellWidth;
+  private final int cellHeight;
+  private final int northBound;
+  private final int southBound;
+  private final IntConsumer consumer;
+  private int lastIndex = GlobalGrid.NO_CELL_INDEX;
+
+  PolylineTraverser(GlobalGrid grid, IntConsumer consumer) {
+    this.numCols = grid.getColumnCount();
+    this.maxRow = grid.getRowCount() - 1;
+    this.cellWidth = (int) grid.getCellWidth();
+    this.cellHeight = (int) grid.getCellHeight();
+    this.northBound = grid.getNorthBound();
+    this.southBound = grid.getSouthBound();
+    this.consumer = consumer;
+  }
+
+  void traverse(double[] lons, double[] lats) {
+    if (lons.length != lats.length) {
+      throw new IllegalArgumentException("Longitude and latitude arrays must be of the same length");
+    }
+    if (lons.length == 0) {
+      return;
+    }
+    double[] unwrapped = GeoUtils.unwrapLongitudes(lons);
+    double u0 = toU(unwrapped[0]);
+    double v0 = toV(lats[0]);
+    if (lons.length == 1) {
+      emit((int) Math.floor(u0), (int) Math.floor(v0));
+    }
+    for (int i = 1; i < lons.length; i++) {
+      double u1 = toU(unwrapped[i]);
+      double v1 = toV(lats[i]);
+      traverseSegment(u0, v0, u1, v1);
+      u0 = u1;
+      v0 = v1;
+    }
+  }
+
+  private void traverseSegment(double u0, double v0, double u1, double v1) {
+    double du = u1 - u0;
+    double dv = v1 - v0;
+    int col = firstCell(u0, du);
+    int row = firstCell(v0, dv);
+    int endCol = lastCell(u1, du);
+    int endRow = lastCell(v1, dv);
+    int stepCol = (int) Math.signum(du);
+    int stepRow = (int) Math.signum(dv);
+    double deltaCol = stepCol != 0 ? 1 / Math.abs(du) : Double.POSITIVE_INFINITY;
+    double deltaRow = stepRow != 0 ? 1 / Math.abs(dv) : Double.POSITIVE_INFINITY;
+    double maxCol = initialMax(u0, col, du, stepCol);
+    double maxRow = initialMax(v0, row, dv, stepRow);
+    // limits the number of steps in case of rounding errors
+    int steps = Math.abs(endCol - col) + Math.abs(endRow - row);
+    emit(col, row);
+    while ((col != endCol || row != endRow) && steps-- > 0) {
+      if (maxCol < maxRow - EPSILON) {
+        col += stepCol;
+        maxCol += deltaCol;
+      } else if (maxRow < maxCol - EPSILON) {
+        row += stepRow;
+        maxRow += deltaRow;
+      } else {
+        // passing exactly through a corner, the cells beside it are only touched in a single point
+        col += stepCol;
+        row += stepRow;
+        maxCol += deltaCol;
+        maxRow += deltaRow;
+        steps--;
+      }
+      emit(col, row);
+    }
+  }
+
+  private static int firstCell(double start, double delta) {
+    int cell = (int) Math.floor(start);
+    if (delta < 0 && cell == start) {
+      // starting exactly on the border of the previous cell moves into it
+      cell--;
+    }
+    return cell;
+  }
+
+  private static int lastCell(double end, double delta) {
+    int cell = (int) Math.floor(end);
+    if (delta > 0 && cell == end) {
+      // ending exactly on the border of the next cell does not enter it
+      cell--;
+    }
+    return cell;
+  }
+
+  private static double initialMax(double start, int cell, double delta, int step) {
+    if (step > 0) {
+      return (cell + 1 - start) / delta;
+    } else if (step < 0) {
+      return (start - cell) / -delta;
+    }
+    return Double.POSITIVE_INFINITY;
+  }
+
+  private void emit(int col, int row) {
+    int cellIndex = Math.min(Math.max(row, 0), maxRow) * numCols + Math.floorMod(col, numCols);
+    if (cellIndex != lastIndex) {
+      lastIndex = cellIndex;
+      consumer.accept(cellIndex);
+    }
+  }
+
+  private double toU(double lon) {
+    return (lon + 180) / cellWidth;
+  }
+
+  private double toV(double lat) {
+    return (northBound - Math.min(Math.max(lat, southBound), northBound)) / cellHeight;
+  }
+}
@@ -0,0 +1,172 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.Arrays;
+
+/**
+ * Plans which cells of a {@link GlobalGrid} are needed next by a moving region of interest, e.g. the footprint of a
+ * satellite along its ground track or the viewport of a panning map. The region of interest is a bounding box of a
+ * fixed size centered on the predicted position. The position is predicted from a motion vector or a timed path for a
+ * lead time.
+ * <p>
+ * The planned cells are ordered by the time at which they are first covered by the moving region, followed by the
+ * cells surrounding the cell at the final position as a margin. Each cell is contained only once. Cell loaders can use
+ * the plan to warm their caches before the data is requested.
+ * </p>
+ */
+public class PrefetchPlanner {
+
+  private final GlobalGrid grid;
+  private final double regionWidth;
+  private final double regionHeight;
+
+  /**
+   * Creates a planner for a region of interest of the given size.
+   *
+   * @param grid         the grid
+   * @param regionWidth  the width of the region of interest in degrees, 0 for a single point
+   * @param regionHeight the height of the region of interest in degrees, 0 for a single point
+   * @throws IllegalArgumentException if the width or height is negative
+   */
+  public PrefetchPlanner(GlobalGrid grid, double regionWidth, double regionHeight) {
+    if (regionWidth < 0 || regionHeight < 0) {
+      throw new IllegalArgumentException(
+          String.format("Region size must not be negative, but is %s x %s", regionWidth, regionHeight));
+    }
+    this.grid = grid.toImmutable();
+    this.regionWidth = regionWidth;
+    this.regionHeight = regionHeight;
+  }
+
+  /**
+   * Plans the cells needed by a region of interest moving linearly from the given position.
+   *
+   * @param lon         the current longitude of the region center
+   * @param lat         the current latitude of the region center
+   * @param lonVelocity the longitude change per time unit in degrees
+   * @param latVelocity the latitude change per time unit in degrees
+   * @param leadTime    the time to look ahead, in the same unit as the velocity
+   * @return the dense cell indices, ordered by expected need
+   */
+  public int[] planMotion(double lon, double lat, double lonVelocity, double latVelocity, double leadTime) {
+    double[] lons = {lon, lon + lonVelocity * leadTime};
+    double[] lats = {lat, lat + latVelocity * leadTime};
+    return plan(lons, lats, new double[]{0, leadTime}, leadTime);
+  }
+
+  /**
+   * Plans the cells needed by a region of interest moving along the given path. The path is given by positions and the
+   * times at which they are reached; between the positions the region moves linearly. Segments crossing the
+   * anti-meridian are detected by a longitude jump of more than 180 degrees. The plan starts at the first position and
+   * ends at the position reached after the lead time, or at the end of the path.
+   *
+   * @param lons     the longitudes of the path
+   * @param lats     the latitudes of the path
+   * @param times    the ascending times at which the positions are reached
+   * @param leadTime the time to look ahead from the first position
+   * @return the dense cell indices, ordered by expected need
+   * @throws IllegalArgumentException if the arrays are empty, not of the same length or the times are not ascending
+   */
+  public int[] planPath(double[] lons, double[] lats, double[] times, double leadTime) {
+    if (lons.length == 0 || lons.length != lats.length || lons.length != times.length) {
+      throw new IllegalArgumentException("Path arrays must not be empty and must be of the same length");
+    }
+    for (int i = 1; i < times.length; i++) {
+      if (times[i] < times[i - 1]) {
+        throw new IllegalArgumentException("Path times must be ascending");
+      }
+    }
+    return plan(GeoUtils.unwrapLongitudes(lons), lats, times, times[0] + leadTime);
+  }
+
+  private int[] plan(double[] lons, double[] lats, double[] times, double endTime) {
+    Plan plan = new Plan(grid.getCellCount());
+    double step = Math.min(grid.getCellWidth(), grid.getCellHeight()) / 2;
+    double lastLon = lons[0];
+    double lastLat = lats[0];
+    addRegion(plan, lastLon, lastLat);
+    for (int i = 1; i < lons.length && times[i - 1] < endTime; i++) {
+      double fraction = 1;
+      if (times[i] > endTime) {
+        fraction = (endTime - times[i - 1]) / (times[i] - times[i - 1]);
+      }
+      double startLon = lons[i - 1];
+      double startLat = lats[i - 1];
+      double deltaLon = (lons[i] - startLon) * fraction;
+      double deltaLat = (lats[i] - startLat) * fraction;
+      // the bounding box of two consecutive samples contains the area swept by the region between them, the step
+      // only keeps these boxes small, so that the order of the cells follows the movement
+      int samples = (int) Math.ceil(Math.max(Math.abs(deltaLon), Math.abs(deltaLat)) / step);
+      for (int s = 1; s <= samples; s++) {
+        double lon = startLon + deltaLon * s / samples;
+        double lat = startLat + deltaLat * s / samples;
+        addSweep(plan, lastLon, lastLat, lon, lat);
+        lastLon = lon;
+        lastLat = lat;
+      }
+    }
+    int[] neighbors = new int[9];
+    int count = grid.getSurroundingCellIndices(grid.getCellIndex(lastLon, clampLat(lastLat)), neighbors);
+    for (int i = 0; i < count; i++) {
+      plan.add(neighbors[i]);
+    }
+    return plan.toArray();
+  }
+
+  private void addRegion(Plan plan, double lon, double lat) {
+    addSweep(plan, lon, lat, lon, lat);
+  }
+
+  private void addSweep(Plan plan, double lon1, double lat1, double lon2, double lat2) {
+    lat1 = clampLat(lat1);
+    lat2 = clampLat(lat2);
+    grid.getIntersectedCellIndices(Math.min(lon1, lon2) - regionWidth / 2, Math.min(lat1, lat2) - regionHeight / 2,
+        Math.max(lon1, lon2) + regionWidth / 2, Math.max(lat1, lat2) + regionHeight / 2, plan::add);
+  }
+
+  private double clampLat(double lat) {
+    return Math.max(grid.getSouthBound(), Math.min(grid.getNorthBound(), lat));
+  }
+
+  private static final class Plan {
+
+    private final boolean[] planned;
+    private int[] cells = new int[64];
+    private int count;
+
+    private Plan(int cellCount) {
+      planned = new boolean[cellCount];
+    }
+
+    private void add(int cellIndex) {
+      if (!planned[cellIndex]) {
+        planned[cellIndex] = true;
+        if (count == cells.length) {
+          cells = Arrays.copyOf(cells, 2 * count);
+        }
+        cells[count++] = cellIndex;
+      }
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(cells, count);
+    }
+  }
+}
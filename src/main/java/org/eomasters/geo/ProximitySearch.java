@@ -0,0 +1,169 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds the cells of a {@link GlobalGrid} close to a location. The search expands row by row away from the location
+ * and within each row column by column away from the location's meridian. It terminates as soon as the latitude gap
+ * to the next row, respectively the distance to the next cell in the row, exceeds the limit. This relies on the
+ * distance to the cells of a row growing with the longitude offset, which also holds where the meridians converge
+ * towards the poles.
+ */
+final class ProximitySearch {
+
+  private final int numCols;
+  private final int numRows;
+  private final int cellWidth;
+  private final int cellHeight;
+  private final int northBound;
+  private final double lon;
+  private final double lat;
+  private final int centerRow;
+  private final int centerCol;
+
+  ProximitySearch(GlobalGrid grid, double lon, double lat) {
+    this.numCols = grid.getColumnCount();
+    this.numRows = grid.getRowCount();
+    this.cellWidth = (int) grid.getCellWidth();
+    this.cellHeight = (int) grid.getCellHeight();
+    this.northBound = grid.getNorthBound();
+    this.lon = lon;
+    this.lat = lat;
+    this.centerRow = Math.min(Math.max((int) Math.floor((northBound - lat) / cellHeight), 0), numRows - 1);
+    this.centerCol = Math.floorMod((int) Math.floor((lon + 180) / cellWidth), numCols);
+  }
+
+  double cellDistance(int row, int col) {
+    double west = -180 + Math.floorMod(col, numCols) * cellWidth;
+    double north = northBound - row * (double) cellHeight;
+    return GeoUtils.distanceToBox(lon, lat, west, north, west + cellWidth, north - cellHeight);
+  }
+
+  private double rowDistance(int row) {
+    double north = northBound - row * (double) cellHeight;
+    double latGap = Math.max(0, Math.max(lat - north, (north - cellHeight) - lat));
+    return GeoUtils.EARTH_RADIUS_KM * Math.toRadians(latGap);
+  }
+
+  void withinRadius(double radiusKm, IntConsumer consumer) {
+    for (int row = centerRow; row >= 0 && rowDistance(row) <= radiusKm; row--) {
+      withinRadius(row, radiusKm, consumer);
+    }
+    for (int row = centerRow + 1; row < numRows && rowDistance(row) <= radiusKm; row++) {
+      withinRadius(row, radiusKm, consumer);
+    }
+  }
+
+  private void withinRadius(int row, double radiusKm, IntConsumer consumer) {
+    int rowOffset = row * numCols;
+    consumer.accept(rowOffset + centerCol);
+    for (int offset = 1; offset <= maxOffset(1) && cellDistance(row, centerCol + offset) <= radiusKm; offset++) {
+      consumer.accept(rowOffset + Math.floorMod(centerCol + offset, numCols));
+    }
+    for (int offset = 1; offset <= maxOffset(-1) && cellDistance(row, centerCol - offset) <= radiusKm; offset++) {
+      consumer.accept(rowOffset + Math.floorMod(centerCol - offset, numCols));
+    }
+  }
+
+  int[] nearest(int k) {
+    int[] result = new int[Math.min(Math.max(k, 0), numRows * numCols)];
+    PriorityQueue<Candidate> queue = new PriorityQueue<>();
+    queue.add(candidate(centerRow, 0, 0));
+    int northRow = centerRow - 1;
+    int southRow = centerRow + 1;
+    for (int count = 0; count < result.length; count++) {
+      Candidate next;
+      while (true) {
+        // rows enter the queue only once they might contain a cell as near as the queued ones
+        while (northRow >= 0 || southRow < numRows) {
+          double northDistance = northRow >= 0 ? rowDistance(northRow) : Double.POSITIVE_INFINITY;
+          double southDistance = southRow < numRows ? rowDistance(southRow) : Double.POSITIVE_INFINITY;
+          double nextDistance = Math.min(northDistance, southDistance);
+          if (!queue.isEmpty() && nextDistance > queue.peek().distance) {
+            break;
+          }
+          if (northDistance <= southDistance) {
+            queue.add(candidate(northRow--, 0, 0));
+          } else {
+            queue.add(candidate(southRow++, 0, 0));
+          }
+        }
+        next = queue.peek();
+        if (next.expanded) {
+          break;
+        }
+        // the successors are not nearer, but may be as near and have a smaller index, so they are queued before the
+        // cell is taken
+        next.expanded = true;
+        if (next.direction == 0) {
+          addSuccessor(queue, next.row, 1, 1);
+          addSuccessor(queue, next.row, -1, 1);
+        } else {
+          addSuccessor(queue, next.row, next.direction, next.offset + 1);
+        }
+      }
+      result[count] = queue.poll().cellIndex;
+    }
+    return result;
+  }
+
+  private void addSuccessor(PriorityQueue<Candidate> queue, int row, int direction, int offset) {
+    if (offset <= maxOffset(direction)) {
+      queue.add(candidate(row, direction, offset));
+    }
+  }
+
+  private int maxOffset(int direction) {
+    // the columns are split between both directions, so that no column is visited twice
+    return direction > 0 ? numCols / 2 : (numCols - 1) / 2;
+  }
+
+  private Candidate candidate(int row, int direction, int offset) {
+    int col = centerCol + direction * offset;
+    return new Candidate(row * numCols + Math.floorMod(col, numCols), row, direction, offset,
+        cellDistance(row, col));
+  }
+
+  private static final class Candidate implements Comparable<Candidate> {
+
+    private final int cellIndex;
+    private final int row;
+    private final int direction;
+    private final int offset;
+    private final double distance;
+    private boolean expanded;
+
+    private Candidate(int cellIndex, int row, int direction, int offset, double distance) {
+      this.cellIndex = cellIndex;
+      this.row = row;
+      this.direction = direction;
+      this.offset = offset;
+      this.distance = distance;
+    }
+
+    @Override
+    public int compareTo(Candidate other) {
+      int result = Double.compare(distance, other.distance);
+      return result != 0 ? result : Integer.compare(cellIndex, other.cellIndex);
+    }
+  }
+}
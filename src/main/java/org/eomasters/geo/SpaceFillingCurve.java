@@ -0,0 +1,146 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Space-filling curves for ordering the cells of a {@link GlobalGrid}. Cells which are close on the curve are also
+ * close on the grid, so processing cells in curve order keeps neighboring work items together. The curves are
+ * defined on the smallest power-of-two square covering the rows and columns of the grid. They do not wrap around the
+ * anti-meridian.
+ */
+public enum SpaceFillingCurve {
+
+  /**
+   * The Z-order curve, which interleaves the bits of the row and the column.
+   */
+  Z_ORDER {
+    @Override
+    long key(int row, int col, int order) {
+      return spreadBits(row) << 1 | spreadBits(col);
+    }
+  },
+
+  /**
+   * The Hilbert curve. In contrast to the Z-order curve, consecutive cells on the curve are adjacent as long as the
+   * curve stays within the grid. If the grid is not a power-of-two square, the curve also runs through the padding of
+   * the covering square, and where it leaves and re-enters the grid consecutive cells are not adjacent. On a 1° grid
+   * this happens 36 times, on a 10° grid 8 times.
+   */
+  HILBERT {
+    @Override
+    long key(int row, int col, int order) {
+      long key = 0;
+      int x = row;
+      int y = col;
+      for (int s = 1 << (order - 1); s > 0; s >>= 1) {
+        int rx = (x & s) > 0 ? 1 : 0;
+        int ry = (y & s) > 0 ? 1 : 0;
+        key += (long) s * s * ((3 * rx) ^ ry);
+        // rotate the quadrant
+        if (ry == 0) {
+          if (rx == 1) {
+            x = s - 1 - x;
+            y = s - 1 - y;
+          }
+          int t = x;
+          x = y;
+          y = t;
+        }
+      }
+      return key;
+    }
+  };
+
+  abstract long key(int row, int col, int order);
+
+  /**
+   * Returns the position of the given cell on the curve.
+   *
+   * @param grid      the grid
+   * @param cellIndex the dense cell index
+   * @return the position on the curve
+   */
+  public long getKey(GlobalGrid grid, int cellIndex) {
+    int numCols = grid.getColumnCount();
+    return key(cellIndex / numCols, cellIndex % numCols, getOrder(grid));
+  }
+
+  /**
+   * Returns the dense cell indices of all cells of the grid in curve order.
+   *
+   * @param grid the grid
+   * @return the ordered dense cell indices
+   */
+  public int[] getAllCellIndices(GlobalGrid grid) {
+    int[] cellIndices = grid.getAllCellIndices();
+    sort(grid, cellIndices);
+    return cellIndices;
+  }
+
+  /**
+   * Sorts the given dense cell indices in curve order.
+   *
+   * @param grid        the grid the cells belong to
+   * @param cellIndices the dense cell indices to be sorted in place
+   */
+  public void sort(GlobalGrid grid, int[] cellIndices) {
+    int numCols = grid.getColumnCount();
+    int order = getOrder(grid);
+    // sort the key and the index packed into one long, which avoids boxing
+    long[] packed = new long[cellIndices.length];
+    for (int i = 0; i < cellIndices.length; i++) {
+      int cellIndex = cellIndices[i];
+      packed[i] = key(cellIndex / numCols, cellIndex % numCols, order) << 32 | cellIndex;
+    }
+    Arrays.sort(packed);
+    for (int i = 0; i < packed.length; i++) {
+      cellIndices[i] = (int) packed[i];
+    }
+  }
+
+  /**
+   * Sorts the given cell identifiers in curve order.
+   *
+   * @param grid    the grid the cells belong to
+   * @param cellIds the cell identifiers to be sorted in place
+   */
+  public void sort(GlobalGrid grid, List<Point> cellIds) {
+    cellIds.sort(Comparator.comparingLong(cellId -> getKey(grid, grid.toCellIndex(cellId))));
+  }
+
+  private static int getOrder(GlobalGrid grid) {
+    int size = Math.max(Math.max(grid.getColumnCount(), grid.getRowCount()), 1);
+    return Math.max(32 - Integer.numberOfLeadingZeros(size - 1), 1);
+  }
+
+  private static long spreadBits(int value) {
+    long x = value & 0xFFFFFFFFL;
+    x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+    x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+    x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+    x = (x | (x << 2)) & 0x3333333333333333L;
+    x = (x | (x << 1)) & 0x5555555555555555L;
+    return x;
+  }
+}
@@ -0,0 +1,185 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Tracks the cells covered by a sequence of viewports, e.g. of a map viewer. For each new viewport only the cells
+ * which became covered and the cells which are no longer covered are reported. The cells covered by a viewport are the
+ * same as returned by {@link GlobalGrid#getIntersectedCells(double, double, double, double)}.
+ * <p>
+ * The difference is computed from the row and column ranges of the two viewports, so the cost depends only on the
+ * number of changed cells and no cell list is created. The tracker is not thread-safe.
+ * </p>
+ */
+public class ViewportTracker {
+
+  private final GlobalGrid grid;
+  private final int numCols;
+  private final int[] intervals = new int[4];
+  private boolean covering;
+  private int firstRow;
+  private int lastRow;
+  private int firstCol;
+  private int colCount;
+
+  /**
+   * Creates a tracker for the given grid. The grid bounds at the time of creation are used.
+   *
+   * @param grid the grid
+   */
+  public ViewportTracker(GlobalGrid grid) {
+    this.grid = grid.toImmutable();
+    this.numCols = this.grid.getColumnCount();
+  }
+
+  /**
+   * Moves the viewport to the provided bounding box. The dense indices of the cells no longer covered are provided to
+   * the <code>removed</code> consumer first, then the indices of the newly covered cells are provided to the
+   * <code>added</code> consumer. On the first call all covered cells are added.
+   *
+   * @param minX    the minimum longitude of the viewport
+   * @param minY    the minimum latitude of the viewport
+   * @param maxX    the maximum longitude of the viewport
+   * @param maxY    the maximum latitude of the viewport
+   * @param added   the consumer receiving the newly covered cells
+   * @param removed the consumer receiving the cells no longer covered
+   */
+  public void update(double minX, double minY, double maxX, double maxY, IntConsumer added, IntConsumer removed) {
+    long block = grid.intersectedBlock(minX, minY, maxX, maxY);
+    int newFirstRow = GlobalGrid.blockFirstIndex(block) / numCols;
+    int newLastRow = GlobalGrid.blockLastIndex(block) / numCols;
+    int newFirstCol = GlobalGrid.blockFirstIndex(block) % numCols;
+    int newColCount = GlobalGrid.blockColCount(block, numCols);
+    if (covering) {
+      provideDifference(firstRow, lastRow, firstCol, colCount, newFirstRow, newLastRow, newFirstCol, newColCount,
+          removed);
+      provideDifference(newFirstRow, newLastRow, newFirstCol, newColCount, firstRow, lastRow, firstCol, colCount,
+          added);
+    } else {
+      provideBlock(newFirstRow, newLastRow, newFirstCol, newColCount, added);
+    }
+    covering = true;
+    firstRow = newFirstRow;
+    lastRow = newLastRow;
+    firstCol = newFirstCol;
+    colCount = newColCount;
+  }
+
+  /**
+   * Provides the dense indices of the cells covered by the current viewport.
+   *
+   * @param consumer the consumer receiving the covered cells
+   */
+  public void getCoveredCellIndices(IntConsumer consumer) {
+    if (covering) {
+      provideBlock(firstRow, lastRow, firstCol, colCount, consumer);
+    }
+  }
+
+  /**
+   * Returns the number of cells covered by the current viewport.
+   *
+   * @return the number of covered cells, 0 before the first update
+   */
+  public int getCoveredCellCount() {
+    // an inverted viewport covers no rows
+    return covering ? Math.max(lastRow - firstRow + 1, 0) * colCount : 0;
+  }
+
+  /**
+   * Removes the current viewport. The dense indices of all covered cells are provided to the consumer. The next update
+   * adds all cells of its viewport again.
+   *
+   * @param removed the consumer receiving the cells no longer covered
+   */
+  public void reset(IntConsumer removed) {
+    getCoveredCellIndices(removed);
+    covering = false;
+  }
+
+  private void provideBlock(int fromRow, int toRow, int fromCol, int count, IntConsumer consumer) {
+    for (int row = fromRow; row <= toRow; row++) {
+      provideColumns(row, fromCol, 0, count, consumer);
+    }
+  }
+
+  /**
+   * Provides the cells of block A which are not in block B.
+   */
+  private void provideDifference(int firstRowA, int lastRowA, int firstColA, int colCountA,
+      int firstRowB, int lastRowB, int firstColB, int colCountB, IntConsumer consumer) {
+    int intervalCount = columnDifference(firstColA, colCountA, firstColB, colCountB);
+    for (int row = firstRowA; row <= lastRowA; row++) {
+      if (row < firstRowB || row > lastRowB) {
+        provideColumns(row, firstColA, 0, colCountA, consumer);
+      } else {
+        for (int i = 0; i < intervalCount; i++) {
+          provideColumns(row, firstColA, intervals[2 * i], intervals[2 * i + 1], consumer);
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the columns of range A which are not in range B. Both ranges may wrap around the anti-meridian. The result
+   * consists of at most two intervals of column offsets relative to the first column of A, stored as start and end
+   * pairs in the intervals array.
+   *
+   * @return the number of intervals
+   */
+  private int columnDifference(int firstColA, int colCountA, int firstColB, int colCountB) {
+    if (colCountB >= numCols) {
+      return 0;
+    }
+    // B covers the offsets [start, start + colCountB) relative to A, modulo the number of columns
+    int start = Math.floorMod(firstColB - firstColA, numCols);
+    int end = start + colCountB;
+    int wrappedEnd = Math.max(end - numCols, 0);
+    int count = 0;
+    if (start >= colCountA) {
+      if (wrappedEnd < colCountA) {
+        count = addInterval(count, wrappedEnd, colCountA);
+      }
+    } else {
+      if (wrappedEnd < start) {
+        count = addInterval(count, wrappedEnd, start);
+      }
+      if (end < colCountA) {
+        count = addInterval(count, end, colCountA);
+      }
+    }
+    return count;
+  }
+
+  private int addInterval(int count, int start, int end) {
+    intervals[2 * count] = start;
+    intervals[2 * count + 1] = end;
+    return count + 1;
+  }
+
+  private void provideColumns(int row, int baseCol, int fromOffset, int toOffset, IntConsumer consumer) {
+    int rowOffset = row * numCols;
+    for (int offset = fromOffset; offset < toOffset; offset++) {
+      int col = baseCol + offset;
+      consumer.accept(rowOffset + (col < numCols ? col : col - numCols));
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class CellAdjacencyTest {
+
+  @Test
+  void test8NeighborhoodMatchesSurroundingCells() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    CellAdjacency adjacency = CellAdjacency.create8Neighborhood(grid);
+    int[] expected = new int[9];
+    int[] actual = new int[9];
+    for (int cellIndex = 0; cellIndex < grid.getCellCount(); cellIndex++) {
+      int expectedCount = grid.getSurroundingCellIndices(cellIndex, expected);
+      assertEquals(expectedCount, adjacency.getNeighbors(cellIndex, actual));
+      assertArrayEquals(Arrays.copyOf(expected, expectedCount), Arrays.copyOf(actual, expectedCount));
+    }
+  }
+
+  @Test
+  void test4Neighborhood() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    CellAdjacency adjacency = CellAdjacency.create4Neighborhood(grid);
+    int cell = grid.toCellIndex(-180, 0);
+    assertEquals(5, adjacency.getNeighborCount(cell));
+    assertEquals(grid.toCellIndex(-180, 3), adjacency.getNeighbor(cell, 0));
+    assertEquals(grid.toCellIndex(177, 0), adjacency.getNeighbor(cell, 1));
+    assertEquals(cell, adjacency.getNeighbor(cell, 2));
+    assertEquals(grid.toCellIndex(-177, 0), adjacency.getNeighbor(cell, 3));
+    assertEquals(grid.toCellIndex(-180, -3), adjacency.getNeighbor(cell, 4));
+
+    // clipped at the north pole
+    assertEquals(4, adjacency.getNeighborCount(grid.toCellIndex(0, 90)));
+  }
+
+  @Test
+  void testRadiusNeighborhood() {
+    GlobalGrid grid = new GlobalGrid(20, 20, 1);
+    grid.setGridBounds(60, -60);
+    CellAdjacency adjacency = CellAdjacency.createForRadius(grid, 2);
+    assertEquals(5 * 5, adjacency.getNeighborCount(grid.toCellIndex(0, 20)));
+    assertEquals(3 * 5, adjacency.getNeighborCount(grid.toCellIndex(0, 60)));
+    int[] sum = new int[1];
+    adjacency.forEachNeighbor(grid.toCellIndex(0, 0), i -> sum[0]++);
+    assertEquals(5 * 5, sum[0]);
+  }
+}
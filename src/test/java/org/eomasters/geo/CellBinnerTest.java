@@ -0,0 +1,133 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2026 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class CellBinnerTest {
+
+  private static final GlobalGrid GRID = GlobalGrid.createImmutable(10, 10, 0.1, 90, -90);
+
+  @Test
+  void statisticsPerCell() {
+    GlobalGrid grid = GlobalGrid.createImmutable(10, 10, 0.1, 60, -60);
+    CellBinner binner = new CellBinner(grid).withHistogram(0, 10, 5);
+    binner.add(new double[]{1, 2, 3, 15}, new double[]{1, 2, 3, 5}, new double[]{2, 4, 10, 7});
+    binner.add(5, 75, 1);
+    binner.add(5, 5, Double.NaN);
+    CellStatistics stats = binner.getStatistics();
+
+    int cell = grid.getCellIndex(1, 1);
+    assertEquals(3, stats.getCount(cell));
+    assertEquals(16, stats.getSum(cell), 1e-12);
+    assertEquals(2, stats.getMin(cell), 1e-12);
+    assertEquals(10, stats.getMax(cell), 1e-12);
+    assertEquals(16 / 3.0, stats.getMean(cell), 1e-12);
+    assertArrayEquals(new long[]{0, 1, 1, 0, 1}, stats.getHistogram(cell, new long[5]));
+    assertEquals(2, stats.getRejectedCount());
+    assertEquals(2, stats.getBinnedCells().cardinality());
+
+    int empty = grid.getCellIndex(-100, -50);
+    assertEquals(0, stats.getCount(empty));
+    assertTrue(Double.isNaN(stats.getMean(empty)));
+    assertTrue(Double.isNaN(stats.getMin(empty)));
+  }
+
+  @Test
+  void repeatedParallelBatchesAreMerged() {
+    int n = 50_000;
+    double[] lons = new double[n];
+    double[] lats = new double[n];
+    double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      lons[i] = i % 360 - 179.5;
+      lats[i] = i % 170 - 84.5;
+      values[i] = i % 10;
+    }
+    CellBinner binner = new CellBinner(GRID).withHistogram(0, 10, 10);
+    for (int batch = 0; batch < 3; batch++) {
+      binner.addParallel(lons, lats, values);
+    }
+    CellStatistics stats = binner.getStatistics();
+    long total = 0;
+    for (int cell = 0; cell < GRID.getCellCount(); cell++) {
+      total += stats.getCount(cell);
+    }
+    assertEquals(3L * n, total);
+    assertEquals(0, stats.getRejectedCount());
+  }
+
+  @Test
+  void concurrentAddingEqualsSequential() throws InterruptedException {
+    Random random = new Random(42);
+    int n = 100_000;
+    double[] lons = new double[n];
+    double[] lats = new double[n];
+    double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      lons[i] = random.nextDouble() * 360 - 180;
+      lats[i] = random.nextDouble() * 180 - 90;
+      values[i] = random.nextInt(100);
+    }
+    CellBinner sequential = new CellBinner(GRID);
+    sequential.add(lons, lats, values);
+    CellBinner parallel = new CellBinner(GRID);
+    parallel.addParallel(lons, lats, values);
+    CellBinner threaded = new CellBinner(GRID);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int t = 0; t < 4; t++) {
+      int offset = t;
+      executor.execute(() -> {
+        for (int i = offset; i < n; i += 4) {
+          threaded.add(lons[i], lats[i], values[i]);
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    CellStatistics expected = sequential.getStatistics();
+    for (CellStatistics actual : new CellStatistics[]{parallel.getStatistics(), threaded.getStatistics()}) {
+      for (int cell = 0; cell < GRID.getCellCount(); cell++) {
+        assertEquals(expected.getCount(cell), actual.getCount(cell));
+        assertEquals(expected.getSum(cell), actual.getSum(cell), 1e-6);
+        assertEquals(expected.getMin(cell), actual.getMin(cell));
+        assertEquals(expected.getMax(cell), actual.getMax(cell));
+      }
+    }
+  }
+
+  @Test
+  void histogramMustBeConfiguredFirst() {
+    CellBinner binner = new CellBinner(GRID);
+    assertThrows(IllegalArgumentException.class, () -> binner.withHistogram(1, 1, 3));
+    binner.add(0, 0, 1);
+    assertThrows(IllegalStateException.class, () -> binner.withHistogram(0, 1, 3));
+    assertThrows(IllegalStateException.class, () -> binner.getStatistics().getHistogram(0, new long[0]));
+  }
+}
@@ -0,0 +1,162 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class CellCacheTest {
+
+  private static final GlobalGrid GRID = new GlobalGrid(10, 10, 0.1);
+
+  @Test
+  void evictsLeastRecentlyUsedByWeight() throws IOException {
+    CellCache<float[]> cache = new CellCache<>(GRID, 3 * 400, v -> v.length * 4L, cell -> new float[100]);
+    float[] first = cache.get(1);
+    cache.get(2);
+    cache.get(3);
+    assertSame(first, cache.get(1));
+    cache.get(4);
+    assertNull(cache.getIfPresent(2));
+    assertSame(first, cache.getIfPresent(1));
+    assertEquals(3, cache.size());
+    assertEquals(1200, cache.getWeight());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(4, cache.getMissCount());
+    assertEquals(4, cache.getLoadCount());
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  void concurrentLoadsAreCoalesced() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    CellCache<String> cache = new CellCache<>(GRID, 1000, String::length, cell -> {
+      loads.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return "cell" + cell;
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(() -> cache.get(7)));
+      }
+      Thread.sleep(50);
+      release.countDown();
+      for (Future<String> result : results) {
+        assertEquals("cell7", result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getLoadCount());
+  }
+
+  @Test
+  void failedLoadsAreNotCached() {
+    AtomicInteger loads = new AtomicInteger();
+    CellCache<String> cache = new CellCache<>(GRID, 1000, String::length, cell -> {
+      loads.incrementAndGet();
+      throw new IOException("missing");
+    });
+    assertThrows(IOException.class, () -> cache.get(3));
+    assertThrows(IOException.class, () -> cache.get(3));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void errorsDoNotBlockLaterLoads() {
+    AtomicInteger loads = new AtomicInteger();
+    CellCache<String> cache = new CellCache<>(GRID, 1000, String::length, cell -> {
+      if (loads.incrementAndGet() == 1) {
+        throw new OutOfMemoryError("test");
+      }
+      return "ok";
+    });
+    assertThrows(OutOfMemoryError.class, () -> cache.get(3));
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals("ok", cache.get(3)));
+  }
+
+  @Test
+  void invalidationDuringLoadDropsStaleValue() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger loads = new AtomicInteger();
+    CellCache<String> cache = new CellCache<>(GRID, 1000, String::length, cell -> {
+      int load = loads.incrementAndGet();
+      if (load == 1) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      return "v" + load;
+    });
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> stale = executor.submit(() -> cache.get(4));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      cache.invalidate(4);
+      release.countDown();
+      assertEquals("v1", stale.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    assertNull(cache.getIfPresent(4));
+    assertEquals("v2", cache.get(4));
+  }
+
+  @Test
+  void missPrefetchesSurroundingCells() throws IOException {
+    CellCache<String> cache = new CellCache<String>(GRID, 1000, String::length, cell -> "c" + cell)
+        .withPrefetchExecutor(Runnable::run);
+    int cell = GRID.getCellIndex(5, 5);
+    cache.get(cell);
+    assertEquals(9, cache.size());
+    assertNotNull(cache.getIfPresent(GRID.getCellIndex(15, 15)));
+    cache.get(GRID.getCellIndex(-5, -5));
+    assertEquals(2, cache.getHitCount() + cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+  }
+}
@@ -0,0 +1,76 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class CellMapTest {
+
+  private static final GlobalGrid GRID = new GlobalGrid(10, 10, 0.1);
+
+  @Test
+  void basicOperations() {
+    CellMap<String> map = new CellMap<>(GRID);
+    assertNull(map.put(5, "a"));
+    assertEquals("a", map.put(5, "b"));
+    assertEquals("b", map.putIfAbsent(5, "c"));
+    assertNull(map.putIfAbsent(6, "c"));
+    assertEquals(2, map.size());
+    assertEquals("bx", map.compute(5, v -> v + "x"));
+    assertNull(map.compute(6, v -> null));
+    assertEquals("y", map.merge(7, "y", String::concat));
+    assertEquals("yz", map.merge(7, "z", String::concat));
+    assertEquals(2, map.size());
+    assertEquals(CellSet.of(map.getGrid(), 5, 7), map.getCells());
+    List<String> values = new ArrayList<>();
+    map.forEach((value, cellIndex) -> values.add(cellIndex + value));
+    assertEquals(List.of("5bx", "7yz"), values);
+    assertEquals("bx", map.remove(5));
+    map.clear();
+    assertEquals(0, map.size());
+    assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+  }
+
+  @Test
+  void concurrentMergesAreNotLost() {
+    CellMap<Long> map = new CellMap<>(GRID);
+    IntStream.range(0, 200_000).parallel().forEach(i -> map.merge(i % 100, 1L, Long::sum));
+    for (int cell = 0; cell < 100; cell++) {
+      assertEquals(2000L, map.get(cell));
+    }
+    assertEquals(100, map.size());
+  }
+
+  @Test
+  void computeIfAbsentReturnsSingleValue() {
+    CellMap<Object> map = new CellMap<>(GRID);
+    Object[] seen = IntStream.range(0, 1000).parallel().mapToObj(i -> map.computeIfAbsent(3, c -> new Object()))
+        .distinct().toArray();
+    assertEquals(1, seen.length);
+    assertSame(seen[0], map.get(3));
+  }
+}
@@ -0,0 +1,95 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.eomasters.utils.GsonStore;
+import org.junit.jupiter.api.Test;
+
+class CellSetCodecTest {
+
+  private static final GlobalGrid GRID = GlobalGrid.createImmutable(1, 1, 0.01, 90, -90);
+
+  @SuppressWarnings("unused")
+  private static class Manifest {
+
+    private String name;
+    private CellSet cells;
+    private CellSet skipped;
+  }
+
+  @Test
+  void roundTripInBothModes() {
+    Random random = new Random(3);
+    CellSet cells = new CellSet(GRID);
+    for (int i = 0; i < 5000; i++) {
+      cells.add(random.nextInt(GRID.getCellCount()));
+    }
+    cells.add(0);
+    cells.add(GRID.getCellCount() - 1);
+    assertEquals(cells, CellSetCodec.decode(GRID, CellSetCodec.encode(cells, false)));
+    assertEquals(cells, CellSetCodec.decode(GRID, CellSetCodec.encode(cells, true)));
+    CellSet empty = new CellSet(GRID);
+    assertEquals(empty, CellSetCodec.decode(GRID, CellSetCodec.encode(empty)));
+  }
+
+  @Test
+  void runLengthModeIsCompactForRows() {
+    CellSet cells = new CellSet(GRID);
+    GRID.getIntersectedCellIndices(-180, -60, 180, 60, cells::add);
+    byte[] encoded = CellSetCodec.encode(cells);
+    assertTrue(encoded.length < 16, "length " + encoded.length);
+    assertTrue(CellSetCodec.encode(cells, false).length <= cells.cardinality() + 10);
+    assertEquals(cells, CellSetCodec.decode(GRID, encoded));
+  }
+
+  @Test
+  void invalidEncodingsAreRejected() {
+    byte[] encoded = CellSetCodec.encode(CellSet.of(GRID, 5, 500, 50000));
+    assertThrows(IllegalArgumentException.class,
+        () -> CellSetCodec.decode(new GlobalGrid(10, 10, 0.1), encoded));
+    // same number of cells, but a different layout
+    byte[] wideCells = CellSetCodec.encode(CellSet.of(new GlobalGrid(2, 1, 0.01), 5));
+    assertThrows(IllegalArgumentException.class, () -> CellSetCodec.decode(new GlobalGrid(1, 2, 0.01), wideCells));
+    assertThrows(IllegalArgumentException.class,
+        () -> CellSetCodec.decode(GRID, Arrays.copyOf(encoded, encoded.length - 1)));
+    assertThrows(IllegalArgumentException.class, () -> CellSetCodec.decode(GRID, new byte[]{7}));
+  }
+
+  @Test
+  void gsonEmbedsBase64() {
+    GsonStore<Manifest> store = new GsonStore<>(Manifest.class,
+        builder -> builder.registerTypeAdapter(CellSet.class, CellSetCodec.typeAdapter(GRID)));
+    Manifest manifest = new Manifest();
+    manifest.name = "planet";
+    manifest.cells = CellSet.of(GRID, 1, 2, 3, 4000);
+    String json = store.toJson(manifest);
+    assertTrue(json.matches("(?s).*\"cells\":\\s*\"[A-Za-z0-9+/]+\".*"), json);
+    Manifest loaded = store.fromJson(json);
+    assertEquals("planet", loaded.name);
+    assertEquals(manifest.cells, loaded.cells);
+    assertNull(loaded.skipped);
+  }
+}
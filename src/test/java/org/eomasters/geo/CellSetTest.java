@@ -0,0 +1,106 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CellSetTest {
+
+  @Test
+  void testSetAlgebra() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    CellSet a = CellSet.of(grid, 1, 2, 3, 100);
+    CellSet b = CellSet.of(grid, 3, 100, 7000);
+
+    assertArrayEquals(new int[]{1, 2, 3, 100, 7000}, a.copy().addAll(b).toArray());
+    assertArrayEquals(new int[]{3, 100}, a.copy().retainAll(b).toArray());
+    assertArrayEquals(new int[]{1, 2}, a.copy().removeAll(b).toArray());
+    assertTrue(a.intersects(b));
+    assertFalse(CellSet.of(grid, 1).intersects(CellSet.of(grid, 2)));
+    assertEquals(4, a.cardinality());
+    assertTrue(new CellSet(grid).isEmpty());
+  }
+
+  @Test
+  void testContains() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    CellSet cells = new CellSet(grid);
+    cells.add(new Point(-180, 90));
+    cells.add(grid.toCellIndex(0, 0));
+    assertTrue(cells.contains(0));
+    assertTrue(cells.contains(new Point(180, 90)));
+    assertTrue(cells.contains(new Point(0, 0)));
+    assertFalse(cells.contains(1));
+    assertFalse(cells.contains(-1));
+    cells.remove(0);
+    assertFalse(cells.contains(0));
+    assertThrows(IllegalArgumentException.class, () -> cells.add(grid.getCellCount()));
+  }
+
+  @Test
+  void testCellIdStringConversion() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    List<String> cellStrings = Arrays.asList("N45E006", "S03W003", "N90W180");
+    CellSet cells = CellSet.fromCellIdStrings(grid, cellStrings);
+    assertEquals(3, cells.cardinality());
+    assertEquals(Arrays.asList("N90W180", "N45E006", "S03W003"), cells.toCellIdStrings());
+    assertEquals(cells, CellSet.fromCellIdStrings(grid, cells.toCellIdStrings()));
+  }
+
+  @Test
+  void testIncompatibleGrids() {
+    CellSet a = new CellSet(new GlobalGrid(3, 3, 1));
+    CellSet b = new CellSet(new GlobalGrid(10, 10, 1));
+    assertThrows(IllegalArgumentException.class, () -> a.addAll(b));
+  }
+
+  @Test
+  void testEqualsComparesGridLayout() {
+    CellSet a = CellSet.of(new GlobalGrid(2, 1, 0.01), 5, 17);
+    assertEquals(a, CellSet.of(new GlobalGrid(2, 1, 0.01), 5, 17));
+    assertEquals(a.hashCode(), CellSet.of(new GlobalGrid(2, 1, 0.01), 5, 17).hashCode());
+    // same number of cells and the same bits, but a different layout
+    assertNotEquals(a, CellSet.of(new GlobalGrid(1, 2, 0.01), 5, 17));
+    CellSet north = CellSet.of(GlobalGrid.createImmutable(10, 10, 0.1, 90, 0), 5);
+    CellSet south = CellSet.of(GlobalGrid.createImmutable(10, 10, 0.1, 0, -90), 5);
+    assertNotEquals(north, south);
+    assertThrows(IllegalArgumentException.class, () -> north.addAll(south));
+  }
+
+  @Test
+  void testGridBoundsAreFixedAtCreation() {
+    GlobalGrid grid = new GlobalGrid(10, 10, 0.1);
+    CellSet cells = CellSet.of(grid, 5);
+    CellSet copy = CellSet.of(grid, 5);
+    grid.setGridBounds(60, -60);
+    assertTrue(cells.getGrid().isImmutable());
+    assertEquals(90, cells.getGrid().getNorthBound());
+    assertEquals(cells, copy);
+    assertNotEquals(cells, CellSet.of(grid, 5));
+  }
+}
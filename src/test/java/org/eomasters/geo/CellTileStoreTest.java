@@ -0,0 +1,109 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CellTileStoreTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void tilesArePersisted() throws IOException {
+    Path file = tempDir.resolve("tiles.eomt");
+    GlobalGrid grid = GlobalGrid.createImmutable(10, 10, 0.5, 60, -60);
+    try (CellTileStore store = CellTileStore.create(file, grid)) {
+      assertEquals(20, store.getTileWidth());
+      assertNull(store.getTileIfAllocated(5));
+      FloatBuffer tile = store.getTile(5);
+      assertEquals(400, tile.capacity());
+      assertEquals(0, tile.get(399));
+      tile.put(3 * 20 + 7, 42.5f);
+      assertEquals(42.5f, store.getTile(5).get(67));
+    }
+    try (CellTileStore store = CellTileStore.open(file)) {
+      assertEquals(grid.getCellCount(), store.getGrid().getCellCount());
+      assertEquals(60, store.getGrid().getNorthBound());
+      assertTrue(store.isAllocated(5));
+      assertFalse(store.isAllocated(6));
+      assertEquals(CellSet.of(store.getGrid(), 5), store.getAllocatedCells());
+      assertEquals(42.5f, store.getTileIfAllocated(5).get(67));
+    }
+  }
+
+  @Test
+  void concurrentAccess() throws IOException {
+    Path file = tempDir.resolve("concurrent.eomt");
+    GlobalGrid grid = GlobalGrid.createImmutable(10, 10, 1, 90, -90);
+    try (CellTileStore store = CellTileStore.create(file, grid, 16, 16)) {
+      IntStream.range(0, 4 * grid.getCellCount()).parallel().forEach(i -> {
+        int cell = i % grid.getCellCount();
+        try {
+          FloatBuffer tile = store.getTile(cell);
+          tile.put(i / grid.getCellCount(), cell);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      for (int cell = 0; cell < grid.getCellCount(); cell++) {
+        FloatBuffer tile = store.getTile(cell);
+        for (int i = 0; i < 4; i++) {
+          assertEquals(cell, tile.get(i));
+        }
+      }
+      assertEquals(grid.getCellCount(), store.getAllocatedCells().cardinality());
+    }
+  }
+
+  @Test
+  void invalidCellIndicesAreRejected() throws IOException {
+    GlobalGrid grid = GlobalGrid.createImmutable(1, 1, 0.25, 90, -90);
+    try (CellTileStore store = CellTileStore.create(tempDir.resolve("fine.eomt"), grid)) {
+      store.getTile(0).put(0, 1f);
+      store.getTile(grid.getCellCount() - 1).put(15, 2f);
+      assertEquals(2f, store.getTileIfAllocated(grid.getCellCount() - 1).get(15));
+      assertThrows(IllegalArgumentException.class, () -> store.isAllocated(-1));
+      assertThrows(IllegalArgumentException.class, () -> store.getTile(grid.getCellCount()));
+      assertThrows(IllegalArgumentException.class, () -> store.getTileIfAllocated(grid.getCellCount()));
+    }
+  }
+
+  @Test
+  void openRejectsOtherFiles() throws IOException {
+    Path file = tempDir.resolve("other.bin");
+    Files.write(file, new byte[64]);
+    assertThrows(IOException.class, () -> CellTileStore.open(file));
+    assertThrows(IllegalArgumentException.class,
+        () -> CellTileStore.create(tempDir.resolve("big.eomt"), new GlobalGrid(10, 10, 1), 0, 10));
+  }
+}
@@ -0,0 +1,100 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eomasters.utils.ProgressListener;
+import org.eomasters.utils.ProgressManager;
+import org.eomasters.utils.ProgressTask;
+import org.junit.jupiter.api.Test;
+
+class CellTilingExecutorTest {
+
+  private static final GlobalGrid GRID = GlobalGrid.createImmutable(10, 10, 0.1, 90, -90);
+
+  @Test
+  void processAllCellsOfRegion() throws InterruptedException {
+    Map<Integer, Boolean> processed = new ConcurrentHashMap<>();
+    Map<Integer, Exception> failures = new CellTilingExecutor(GRID).withParallelism(4)
+        .process(0, 0, 30, 20, cellIndex -> processed.put(cellIndex, Boolean.TRUE));
+    assertTrue(failures.isEmpty());
+    assertEquals(GRID.getIntersectedCells(0, 0, 30, 20).size(), processed.size());
+  }
+
+  @Test
+  void failuresAreCollectedPerCell() throws InterruptedException {
+    int failingCell = GRID.getCellIndex(5, 5);
+    AtomicInteger count = new AtomicInteger();
+    Map<Integer, Exception> failures = new CellTilingExecutor(GRID).withParallelism(3)
+        .process(CellSet.of(GRID, 0, 1, 2, failingCell, 40), cellIndex -> {
+          count.incrementAndGet();
+          if (cellIndex == failingCell) {
+            throw new IOException("broken");
+          }
+        });
+    assertEquals(5, count.get());
+    assertEquals(1, failures.size());
+    assertEquals("broken", failures.get(failingCell).getMessage());
+  }
+
+  @Test
+  void cellsInFlightAreBounded() throws InterruptedException {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    new CellTilingExecutor(GRID).withParallelism(8).withMaxInFlight(2).process(GRID.getAllCellIndices(), cellIndex -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      Thread.sleep(1);
+      inFlight.decrementAndGet();
+    });
+    assertTrue(maxInFlight.get() <= 2);
+  }
+
+  @Test
+  void progressIsReported() throws InterruptedException {
+    List<Integer> progress = new ArrayList<>();
+    ProgressListener listener = new ProgressListener() {
+      @Override
+      public void onProgressChanged(ProgressTask task) {
+        progress.add(task.getProgress());
+      }
+
+      @Override
+      public void onTaskDone(ProgressTask task) {
+        progress.add(100);
+      }
+    };
+    ProgressManager.addProgressListener("tiling", listener);
+    try {
+      new CellTilingExecutor(GRID).withParallelism(2).withProgressTask("tiling").process(new int[]{0, 1, 2, 3}, i -> {
+      });
+    } finally {
+      ProgressManager.removeProgressListener(listener);
+    }
+    assertEquals(100, progress.get(progress.size() - 1));
+    assertEquals(ProgressManager.UNDEFINED_PROGRESS, ProgressManager.getProgress("tiling"));
+  }
+}
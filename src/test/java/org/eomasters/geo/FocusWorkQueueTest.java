@@ -0,0 +1,105 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class FocusWorkQueueTest {
+
+  private static final GlobalGrid GRID = GlobalGrid.createImmutable(10, 10, 0.1, 90, -90);
+
+  private static double centerDistance(double lon, double lat, int cellIndex) {
+    return GeoUtils.distance(lon, lat, -180 + (GRID.getCellX(cellIndex) + 185), GRID.getCellY(cellIndex) - 5.0);
+  }
+
+  @Test
+  void pollsInOrderOfDistanceWhileFocusMoves() {
+    FocusWorkQueue queue = new FocusWorkQueue(GRID, 0, 0);
+    List<Integer> expected = new ArrayList<>();
+    Random random = new Random(11);
+    for (int i = 0; i < 300; i++) {
+      int cell = random.nextInt(GRID.getCellCount());
+      if (queue.add(cell)) {
+        expected.add(cell);
+      }
+    }
+    assertEquals(expected.size(), queue.size());
+    double[][] foci = {{0, 0}, {179, 50}, {-170, -85}, {90, 10}};
+    int step = 0;
+    while (!queue.isEmpty()) {
+      double[] focus = foci[step++ % foci.length];
+      queue.setFocus(focus[0], focus[1]);
+      int nearest = expected.stream()
+          .min(Comparator.<Integer>comparingDouble(c -> centerDistance(focus[0], focus[1], c))
+              .thenComparingInt(c -> c)).orElseThrow();
+      assertEquals(nearest, queue.poll());
+      expected.remove(Integer.valueOf(nearest));
+    }
+    assertEquals(GlobalGrid.NO_CELL_INDEX, queue.poll());
+  }
+
+  @Test
+  void workersTakeAllCells() throws InterruptedException {
+    FocusWorkQueue queue = new FocusWorkQueue(GRID, 10, 50);
+    ConcurrentHashMap<Integer, Boolean> taken = new ConcurrentHashMap<>();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int t = 0; t < 4; t++) {
+      executor.execute(() -> {
+        try {
+          for (int cell = queue.take(); cell != GlobalGrid.NO_CELL_INDEX; cell = queue.take()) {
+            assertTrue(taken.putIfAbsent(cell, Boolean.TRUE) == null);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    for (int cell : GRID.getAllCellIndices()) {
+      queue.add(cell);
+    }
+    queue.close();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(GRID.getCellCount(), taken.size());
+    assertThrows(IllegalStateException.class, () -> queue.add(0));
+  }
+
+  @Test
+  void removeAndContains() {
+    FocusWorkQueue queue = new FocusWorkQueue(GRID, 0, 0);
+    queue.addAll(CellSet.of(GRID, 1, 2, 3));
+    assertFalse(queue.add(2));
+    assertTrue(queue.remove(2));
+    assertFalse(queue.contains(2));
+    assertEquals(2, queue.size());
+  }
+}
@@ -0,0 +1,74 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GlobalGridPyramidTest {
+
+  @Test
+  void testParentAndAncestor() {
+    GlobalGridPyramid pyramid = GlobalGridPyramid.create(0.01, 10, 5, 1);
+    GlobalGrid fine = pyramid.getLevel(2);
+    int cell = fine.getCellIndex(7.5, 45.5);
+    int parent = pyramid.parent(2, cell);
+    assertEquals(new Point(5, 50), pyramid.getLevel(1).toCellId(parent));
+    assertEquals(new Point(0, 50), pyramid.getLevel(0).toCellId(pyramid.ancestorAtLevel(2, cell, 0)));
+    assertEquals(cell, pyramid.ancestorAtLevel(2, cell, 2));
+    assertThrows(IllegalArgumentException.class, () -> pyramid.parent(0, 0));
+  }
+
+  @Test
+  void testChildrenAndDescendants() {
+    GlobalGridPyramid pyramid = GlobalGridPyramid.create(0.01, 10, 5, 1);
+    assertEquals(4, pyramid.getChildCount(0));
+    assertEquals(25, pyramid.getChildCount(1));
+    int cell = pyramid.getLevel(0).toCellIndex(0, 50);
+    int[] children = new int[4];
+    assertEquals(4, pyramid.children(0, cell, children));
+    GlobalGrid middle = pyramid.getLevel(1);
+    assertEquals(new Point(0, 50), middle.toCellId(children[0]));
+    assertEquals(new Point(5, 50), middle.toCellId(children[1]));
+    assertEquals(new Point(0, 45), middle.toCellId(children[2]));
+    assertEquals(new Point(5, 45), middle.toCellId(children[3]));
+
+    List<Integer> descendants = new ArrayList<>();
+    pyramid.descendants(0, cell, 2, descendants::add);
+    assertEquals(100, descendants.size());
+    for (int descendant : descendants) {
+      assertEquals(cell, pyramid.ancestorAtLevel(2, descendant, 0));
+    }
+    assertThrows(IllegalArgumentException.class, () -> pyramid.getChildCount(2));
+  }
+
+  @Test
+  void testInvalidLevels() {
+    assertThrows(IllegalArgumentException.class, () -> GlobalGridPyramid.create(0.01, 10, 3));
+    GlobalGrid bounded = new GlobalGrid(5, 5, 0.01);
+    bounded.setGridBounds(60, -60);
+    assertThrows(IllegalArgumentException.class,
+        () -> new GlobalGridPyramid(new GlobalGrid(10, 10, 0.01), bounded));
+  }
+}
@@ -3,7 +3,7 @@
  * EOM Commons - Library of common utilities for Java
  * -> https://www.eomasters.org/
  * ======================================================================
- * Copyright (C) 2023 - 2024 Marco Peters
+ * Copyright (C) 2023 - 2026 Marco Peters
  * ======================================================================
  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
@@ -17,10 +17,24 @@
 
 package org.eomasters.geo;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.awt.Point;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
 class GlobalGridTest {
@@ -144,6 +158,16 @@ class GlobalGridTest {
     assertEquals(new Point(0, -33), cells.get(cells.size() - 1));
   }
 
+  @Test
+  void getIntersectedCells_eastEdgeJustBelowAntiMeridian() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 1e-4);
+    List<Point> cells = grid.getIntersectedCells(-180, 0, 179.99999, 1);
+    assertEquals(240, cells.size());
+    assertEquals(new Point(177, 0), cells.get(cells.size() - 1));
+    assertEquals(240, grid.countIntersectedCells(-180, 0, 179.99999, 1));
+    assertEquals(8, grid.getIntersectedCells(170, 0, 179.99999, 1).size());
+  }
+
   @Test
   void getIntersectedCells_20degree() {
     GlobalGrid grid = new GlobalGrid(20, 20, 1);
@@ -161,5 +185,446 @@ class GlobalGridTest {
     assertEquals(new Point(180, -90), GlobalGrid.parseCellId("S90E180"));
     assertEquals(new Point(180, 90), GlobalGrid.parseCellId("N90E180"));
   }
-}
 
+  @Test
+  void cellIndexShouldBeConsistentWithCellId() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    assertEquals(360 / 3 * 180 / 3, grid.getCellCount());
+    Point[] allIds = grid.getAllIds();
+    int[] allIndices = grid.getAllCellIndices();
+    assertEquals(allIds.length, allIndices.length);
+    for (int i = 0; i < allIds.length; i++) {
+      assertEquals(i, grid.toCellIndex(allIds[i]));
+      assertEquals(allIds[i], grid.toCellId(allIndices[i]));
+    }
+    assertEquals(grid.toCellIndex(grid.getCellId(-117.000018, 57.000018)), grid.getCellIndex(-117.000018, 57.000018));
+    assertEquals(grid.toCellIndex(grid.getCellId(180, -90)), grid.getCellIndex(180, -90));
+    assertEquals(grid.toCellIndex(-180, 90), grid.toCellIndex(180, 90));
+    assertThrows(IllegalArgumentException.class, () -> grid.toCellId(grid.getCellCount()));
+    assertThrows(IllegalArgumentException.class, () -> grid.toCellIndex(0, -90));
+  }
+
+  @Test
+  void cellIndexShouldRespectGridBounds() {
+    GlobalGrid grid = new GlobalGrid(20, 20, 1);
+    grid.setGridBounds(60, -60);
+    assertEquals(108, grid.getCellCount());
+    assertEquals(0, grid.toCellIndex(-180, 60));
+    assertEquals(107, grid.toCellIndex(160, -40));
+    assertEquals(new Point(160, -40), grid.toCellId(107));
+  }
+
+  @Test
+  void surroundingCellIndicesShouldMatchCellIds() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    Point[] cellIds = {new Point(0, 0), new Point(-180, -30), new Point(177, -30), new Point(177, 90),
+        new Point(3, -87)};
+    int[] indices = new int[9];
+    for (Point cellId : cellIds) {
+      Point[] expected = grid.getSurroundingCellIds(cellId);
+      int count = grid.getSurroundingCellIndices(grid.toCellIndex(cellId), indices);
+      assertEquals(expected.length, count);
+      for (int i = 0; i < count; i++) {
+        assertEquals(expected[i], grid.toCellId(indices[i]));
+      }
+    }
+  }
+
+  @Test
+  void intersectedCellIndicesShouldMatchCellIds() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    List<Point> expected = grid.getIntersectedCells(-4, -35, 2, -30);
+    List<Integer> indices = new ArrayList<>();
+    grid.getIntersectedCellIndices(-4, -35, 2, -30, indices::add);
+    assertEquals(expected.size(), indices.size());
+    for (int i = 0; i < indices.size(); i++) {
+      assertEquals(expected.get(i), grid.toCellId(indices.get(i)));
+    }
+  }
+
+  @Test
+  void bulkCellIndicesShouldMatchSingleCalls() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    double[] lons = {-180, -178, 180, -120, -117.000018, 2.999967, 3.99967, Double.NaN};
+    double[] lats = {90, 90, -90, 57.000018, 57.000018, 52.284484, -2.9999967, 0};
+    int[] cellIndices = new int[lons.length];
+    grid.getCellIndices(lons, lats, cellIndices);
+    double[] interleaved = new double[lons.length * 3];
+    for (int i = 0; i < lons.length; i++) {
+      interleaved[i * 3] = lons[i];
+      interleaved[i * 3 + 1] = lats[i];
+    }
+    int[] stridedIndices = new int[lons.length];
+    grid.getCellIndices(interleaved, 0, 3, stridedIndices, lons.length);
+    for (int i = 0; i < lons.length - 1; i++) {
+      assertEquals(grid.getCellIndex(lons[i], lats[i]), cellIndices[i]);
+      assertEquals(cellIndices[i], stridedIndices[i]);
+    }
+    assertEquals(GlobalGrid.NO_CELL_INDEX, cellIndices[lons.length - 1]);
+    assertEquals(GlobalGrid.NO_CELL_INDEX, stridedIndices[lons.length - 1]);
+  }
+
+  @Test
+  void bulkCellIndicesShouldMarkCoordinatesOutsideBounds() {
+    GlobalGrid grid = new GlobalGrid(20, 20, 1);
+    grid.setGridBounds(60, -60);
+    int[] cellIndices = new int[2];
+    grid.getCellIndices(new double[]{10, 10}, new double[]{70, 50}, cellIndices);
+    assertEquals(GlobalGrid.NO_CELL_INDEX, cellIndices[0]);
+    assertEquals(grid.toCellIndex(0, 60), cellIndices[1]);
+  }
+
+  @Test
+  void streamsShouldMatchMaterializedCells() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    assertArrayEquals(grid.getAllIds(), grid.streamAllIds().toArray(Point[]::new));
+    assertArrayEquals(grid.getAllCellIndices(), grid.streamAllCellIndices().parallel().toArray());
+    assertEquals(grid.getIntersectedCells(-4, -35, 2, -30),
+        grid.streamIntersectedCells(-4, -35, 2, -30).parallel().collect(Collectors.toList()));
+    assertEquals(grid.getGlobalCellIdStripe(-6, 9, 30),
+        grid.streamGlobalCellIdStripe(-6, 9, 30).parallel().collect(Collectors.toList()));
+  }
+
+  @Test
+  void stripeStreamShouldWrapAroundAntiMeridian() {
+    GlobalGrid grid = new GlobalGrid(20, 20, 1);
+    grid.setGridBounds(60, -60);
+    List<Point> cells = grid.streamGlobalCellIdStripe(160, 40, 60).collect(Collectors.toList());
+    assertEquals(12, cells.size());
+    assertEquals(new Point(160, 60), cells.get(0));
+    assertEquals(new Point(-180, 60), cells.get(1));
+    assertEquals(new Point(-180, -40), cells.get(cells.size() - 1));
+  }
+
+  @Test
+  void cellSpliteratorShouldSplitByRows() {
+    CellSpliterator spliterator = new CellSpliterator(10, 0, 4, 2, 5);
+    Spliterator.OfInt prefix = spliterator.trySplit();
+    assertEquals(10, prefix.estimateSize());
+    assertEquals(10, spliterator.estimateSize());
+    int[] first = new int[1];
+    spliterator.tryAdvance((int i) -> first[0] = i);
+    assertEquals(22, first[0]);
+    List<Integer> rest = new ArrayList<>();
+    spliterator.forEachRemaining((int i) -> rest.add(i));
+    assertEquals(9, rest.size());
+    assertEquals(36, rest.get(rest.size() - 1));
+  }
+
+  @Test
+  void polygonShouldOnlyTouchIntersectedCells() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    // aligned to the cell borders
+    List<Point> cells = new ArrayList<>();
+    grid.getIntersectedCells(new double[]{0, 6, 6, 0}, new double[]{0, 0, 6, 6}, cells::add);
+    assertEquals(List.of(new Point(0, 6), new Point(3, 6), new Point(0, 3), new Point(3, 3)), cells);
+
+    // diagonal stripe from (0, 0) to (12, 12)
+    cells.clear();
+    grid.getIntersectedCells(new double[]{0, 1, 13, 12}, new double[]{1, 0, 12, 13}, cells::add);
+    assertEquals(List.of(new Point(9, 15), new Point(12, 15),
+        new Point(6, 12), new Point(9, 12), new Point(12, 12),
+        new Point(3, 9), new Point(6, 9), new Point(9, 9),
+        new Point(0, 6), new Point(3, 6), new Point(6, 6),
+        new Point(0, 3), new Point(3, 3)), cells);
+    assertEquals(30, grid.getIntersectedCells(0, 0, 13, 13).size());
+  }
+
+  @Test
+  void polygonShouldWrapAroundAntiMeridian() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    List<Point> cells = new ArrayList<>();
+    grid.getIntersectedCells(new double[]{178, -178, -178, 178}, new double[]{-1, -1, 1, 1}, cells::add);
+    assertEquals(List.of(new Point(-180, 3), new Point(177, 3), new Point(-180, 0), new Point(177, 0)), cells);
+    assertThrows(IllegalArgumentException.class, () -> grid.getIntersectedCellIndices(
+        new double[]{-180, -60, 60}, new double[]{80, 80, 80}, i -> { }));
+  }
+
+  @Test
+  void getIntersectedCells_acrossAntiMeridian() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    List<Point> cells = grid.getIntersectedCells(170, -2, -170, 2);
+    assertEquals(16, cells.size());
+    assertEquals(new Point(168, 3), cells.get(0));
+    assertEquals(new Point(177, 3), cells.get(3));
+    assertEquals(new Point(-180, 3), cells.get(4));
+    assertEquals(new Point(-171, 0), cells.get(cells.size() - 1));
+
+    assertEquals(cells, grid.getIntersectedCells(170, -2, 190, 2));
+    assertEquals(cells, grid.getIntersectedCells(-190, -2, -170, 2));
+    assertEquals(grid.getIntersectedCells(-170, -2, -160, 2), grid.getIntersectedCells(190, -2, 200, 2));
+    assertEquals(120 * 2, grid.getIntersectedCells(-200, -2, 170, 2).size());
+    assertEquals(List.of(new Point(177, 3), new Point(177, 0)), grid.getIntersectedCells(178, -2, 180, 2));
+  }
+
+  @Test
+  void polylineShouldBeTraversedInOrder() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    List<Point> cells = new ArrayList<>();
+    grid.getTraversedCells(new double[]{0.5, 7.5, 7.5}, new double[]{0.5, 2, -4}, cells::add);
+    assertEquals(List.of(new Point(0, 3), new Point(3, 3), new Point(6, 3), new Point(6, 0), new Point(6, -3)),
+        cells);
+
+    // diagonal through the cell corners
+    cells.clear();
+    grid.getTraversedCells(new double[]{0.5, 6.5}, new double[]{0.5, 6.5}, cells::add);
+    assertEquals(List.of(new Point(0, 3), new Point(3, 6), new Point(6, 9)), cells);
+
+    // ending and continuing on a cell border
+    cells.clear();
+    grid.getTraversedCells(new double[]{1, 3, 5}, new double[]{1, 1, 1}, cells::add);
+    assertEquals(List.of(new Point(0, 3), new Point(3, 3)), cells);
+  }
+
+  @Test
+  void polylineShouldCrossAntiMeridian() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    List<Point> cells = new ArrayList<>();
+    grid.getTraversedCells(new double[]{176, -176}, new double[]{1, 1}, cells::add);
+    assertEquals(List.of(new Point(174, 3), new Point(177, 3), new Point(-180, 3), new Point(-177, 3)), cells);
+  }
+
+  @Test
+  void cellsWithinRadiusShouldMatchFullScan() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    double[][] locations = {{0.5, 0.5}, {179, -30}, {10, 88}, {-100, -89.5}};
+    for (double[] location : locations) {
+      for (double radiusKm : new double[]{0, 150, 800, 2500}) {
+        Set<Integer> expected = new TreeSet<>();
+        for (int cellIndex : grid.getAllCellIndices()) {
+          if (grid.getCellDistance(location[0], location[1], cellIndex) <= radiusKm) {
+            expected.add(cellIndex);
+          }
+        }
+        List<Integer> actual = new ArrayList<>();
+        grid.getCellIndicesWithinRadius(location[0], location[1], radiusKm, actual::add);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, new TreeSet<>(actual));
+      }
+    }
+  }
+
+  @Test
+  void nearestCellsShouldMatchFullScan() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    double[][] locations = {{0.5, 0.5}, {179, -30}, {10, 88}};
+    for (double[] location : locations) {
+      int[] expected = Arrays.stream(grid.getAllCellIndices()).boxed()
+          .sorted(Comparator.comparingDouble((Integer i) -> grid.getCellDistance(location[0], location[1], i))
+              .thenComparing(i -> i))
+          .limit(50).mapToInt(i -> i).toArray();
+      assertArrayEquals(expected, grid.getNearestCellIndices(location[0], location[1], 50));
+    }
+    assertEquals(grid.getCellIndex(0.5, 0.5), grid.getNearestCellIndices(0.5, 0.5, 1)[0]);
+  }
+
+  @Test
+  void nearestCellsWithEqualDistanceShouldBeOrderedByIndex() {
+    GlobalGrid grid = new GlobalGrid(10, 10, 0.1);
+    // on a cell corner the four adjacent cells have the distance 0
+    assertArrayEquals(new int[]{305, 306, 341, 342}, grid.getNearestCellIndices(0, 0, 4));
+    double[][] corners = {{0, 0}, {0, -40}, {-180, 50}, {30, 90}};
+    for (double[] corner : corners) {
+      int[] expected = Arrays.stream(grid.getAllCellIndices()).boxed()
+          .sorted(Comparator.comparingDouble((Integer i) -> grid.getCellDistance(corner[0], corner[1], i))
+              .thenComparing(i -> i))
+          .limit(30).mapToInt(i -> i).toArray();
+      assertArrayEquals(expected, grid.getNearestCellIndices(corner[0], corner[1], 30));
+    }
+  }
+
+  @Test
+  void cellDistanceShouldConsiderConvergingMeridians() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    assertEquals(0, grid.getCellDistance(1, 1, grid.getCellIndex(1, 1)));
+    // one degree of longitude shrinks with the cosine of the latitude
+    double atEquator = grid.getCellDistance(-1, 1, grid.toCellIndex(0, 3));
+    double at59 = grid.getCellDistance(-1, 59, grid.toCellIndex(0, 60));
+    assertEquals(111.2, atEquator, 0.1);
+    assertEquals(atEquator * Math.cos(Math.toRadians(59)), at59, 0.1);
+  }
+
+  @Test
+  void cellIdShouldBeFormattedCorrectly() {
+    assertEquals("N90W180", GlobalGrid.formatCellId(new Point(-180, 90)));
+    assertEquals("S03E000", GlobalGrid.formatCellId(new Point(0, -3)));
+    assertEquals("N00E007", GlobalGrid.formatCellId(new Point(7, 0)));
+  }
+
+  @Test
+  void cellIdStringsShouldRoundTrip() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    for (int cellIndex : grid.getAllCellIndices()) {
+      String cellString = grid.getCellIdString(cellIndex);
+      assertEquals(GlobalGrid.formatCellId(grid.toCellId(cellIndex)), cellString);
+      assertEquals(cellIndex, grid.parseCellIndex(cellString, 0));
+    }
+    assertSame(grid.getCellIdString(42), grid.getCellIdString(42));
+
+    String buffer = "N45E006,S03W003";
+    assertEquals(new Point(-3, -3), GlobalGrid.parseCellId(buffer, 8));
+    assertEquals(grid.toCellIndex(6, 45), grid.parseCellIndex(buffer, 0));
+    assertEquals(grid.toCellIndex(-3, -3), grid.parseCellIndex(buffer.getBytes(StandardCharsets.US_ASCII), 8));
+    assertThrows(IllegalArgumentException.class, () -> grid.parseCellIndex(buffer, 9));
+    assertThrows(IllegalArgumentException.class, () -> GlobalGrid.parseCellId("N4XE006"));
+    assertThrows(IllegalArgumentException.class, () -> GlobalGrid.parseCellId("X45E006"));
+  }
+
+  @Test
+  void immutableGridShouldRejectBoundsChange() {
+    GlobalGrid grid = GlobalGrid.createImmutable(20, 20, 1, 60, -60);
+    assertTrue(grid.isImmutable());
+    assertSame(grid, grid.toImmutable());
+    assertEquals(108, grid.getCellCount());
+    assertEquals(new Point(160, -40), grid.toCellId(107));
+    assertThrows(UnsupportedOperationException.class, () -> grid.setGridBounds(90, -90));
+  }
+
+  @Test
+  void immutableCopyShouldKeepCurrentBounds() {
+    GlobalGrid grid = new GlobalGrid(20, 20, 1);
+    grid.setGridBounds(60, -60);
+    GlobalGrid immutable = grid.toImmutable();
+    grid.setGridBounds(90, -90);
+    assertFalse(grid.isImmutable());
+    assertEquals(162, grid.getCellCount());
+    assertEquals(108, immutable.getCellCount());
+    assertEquals(60, immutable.getNorthBound());
+    assertEquals(-60, immutable.getSouthBound());
+  }
+
+  @Test
+  void pixelLocationShouldBeConsistentWithCellId() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    assertEquals(36000, grid.getCellRasterWidth());
+    CellPixel pixel = new CellPixel();
+
+    grid.locate(0, 3, pixel);
+    assertEquals(grid.toCellIndex(0, 3), pixel.getCellIndex());
+    assertEquals(0, pixel.getPixelX());
+    assertEquals(0, pixel.getPixelY());
+
+    // within half a pixel before the border the pixel belongs to the next cell
+    grid.locate(2.999967, 3.000018, pixel);
+    assertEquals(grid.toCellIndex(grid.getCellId(2.999967, 3.000018)), pixel.getCellIndex());
+    assertEquals(grid.toCellIndex(3, 3), pixel.getCellIndex());
+    assertEquals(0, pixel.getPixelX());
+    assertEquals(0, pixel.getPixelY());
+
+    grid.locate(1.5, 1.5, pixel);
+    assertEquals(18000, pixel.getPixelX());
+    assertEquals(18000, pixel.getPixelY());
+    assertEquals(18000 * 36000 + 18000, pixel.getOffset());
+
+    grid.locate(2.9999, 0.0001, pixel);
+    assertEquals(grid.toCellIndex(0, 3), pixel.getCellIndex());
+    assertEquals(35999, pixel.getPixelX());
+    assertEquals(35999, pixel.getPixelY());
+
+    // just inside a cell border the pixel is the first one of the cell
+    grid.locate(3.00001, 2.99999, pixel);
+    assertEquals(grid.toCellIndex(3, 3), pixel.getCellIndex());
+    assertEquals(0, pixel.getPixelX());
+    assertEquals(0, pixel.getPixelY());
+
+    // also across the anti-meridian
+    grid.locate(179.99999, 0.5, pixel);
+    assertEquals(grid.toCellIndex(-180, 3), pixel.getCellIndex());
+    assertEquals(0, pixel.getPixelX());
+  }
+
+  @Test
+  void bulkPixelLocationShouldMatchSingleCalls() {
+    GlobalGrid grid = new GlobalGrid(3, 3, 3 / 36000.0);
+    double[] lons = {-180, 179.99999, 2.999967, 1.5, -1.5, 3.00001, -2.99999, Double.NaN};
+    double[] lats = {90, -89.99999, 3.000018, 1.5, -1.5, 2.99999, -0.00001, 0};
+    int[] cellIndices = new int[lons.length];
+    int[] offsets = new int[lons.length];
+    grid.locate(lons, lats, cellIndices, offsets);
+    CellPixel pixel = new CellPixel();
+    for (int i = 0; i < lons.length - 1; i++) {
+      grid.locate(lons[i], lats[i], pixel);
+      assertEquals(pixel.getCellIndex(), cellIndices[i]);
+      assertEquals(pixel.getOffset(), offsets[i]);
+    }
+    // near-border coordinates are in the first pixel of their cell
+    assertEquals(0, offsets[5]);
+    assertEquals(0, offsets[6]);
+    assertEquals(GlobalGrid.NO_CELL_INDEX, cellIndices[lons.length - 1]);
+    assertEquals(-1, offsets[lons.length - 1]);
+  }
+
+  @Test
+  void cellCountsShouldMatchMaterializedCells() {
+    GlobalGrid grid = new GlobalGrid(10, 15, 0.1);
+    grid.setGridBounds(75, -60);
+    double[][] boxes = {{0, 0, 30, 20}, {170, -10, -170, 10}, {170, 5, 190, 5}, {-180, -90, 180, 90},
+        {-35.5, -59, 12.25, 74}, {100, 10, 100, 10}};
+    for (double[] box : boxes) {
+      assertEquals(grid.getIntersectedCells(box[0], box[1], box[2], box[3]).size(),
+          grid.countIntersectedCells(box[0], box[1], box[2], box[3]));
+    }
+    int[][] stripes = {{-180, 40, 75}, {0, 15, 30}, {20, 0, 30}, {100, 360, -55}, {-180, 20, -60}};
+    for (int[] stripe : stripes) {
+      assertEquals(grid.getGlobalCellIdStripe(stripe[0], stripe[1], stripe[2]).size(),
+          grid.countStripeCells(stripe[0], stripe[1], stripe[2]));
+    }
+    assertEquals(grid.getGlobalCellIdStripe(-10, 30).size(), grid.countStripeCells(-10, 30));
+  }
+
+  @Test
+  void intersectsAnyCellShouldCompareCellBlocks() {
+    GlobalGrid grid = new GlobalGrid(10, 10, 0.1);
+    assertTrue(grid.intersectsAnyCell(0, 0, 15, 15, 12, 12, 30, 30));
+    assertTrue(grid.intersectsAnyCell(1, 1, 2, 2, 8, 8, 9, 9));
+    assertFalse(grid.intersectsAnyCell(0, 0, 5, 5, 12, 0, 15, 5));
+    assertFalse(grid.intersectsAnyCell(0, 0, 5, 5, 0, 22, 5, 25));
+    assertTrue(grid.intersectsAnyCell(170, 0, -170, 5, -175, 2, -160, 3));
+    assertFalse(grid.intersectsAnyCell(170, 0, -175, 5, -165, 2, 165, 3));
+    assertTrue(grid.intersectsAnyCell(-180, 0, 180, 5, 42, 2, 43, 3));
+  }
+
+  @Test
+  void invertedBoxesShouldIntersectNoCells() {
+    for (GlobalGrid grid : new GlobalGrid[]{new GlobalGrid(3, 3, 0.01), new GlobalGrid(10, 10, 0.1)}) {
+      assertEquals(0, grid.getIntersectedCells(0, 10, 5, 5).size());
+      assertEquals(0, grid.countIntersectedCells(0, 10, 5, 5));
+      assertEquals(0, grid.streamIntersectedCellIndices(0, 10, 5, 5).count());
+      assertFalse(grid.intersectsAnyCell(0, 10, 5, 5, 0, 0, 5, 20));
+      assertFalse(grid.intersectsAnyCell(0, 0, 5, 20, 0, 10, 5, 5));
+    }
+  }
+
+  @Test
+  void geoTransformShouldBeConsistentWithLocate() {
+    GlobalGrid grid = new GlobalGrid(10, 10, 0.25);
+    Random random = new Random(5);
+    CellPixel pixel = new CellPixel();
+    for (int i = 0; i < 1000; i++) {
+      double lon = random.nextDouble() * 360 - 180;
+      double lat = random.nextDouble() * 180 - 90;
+      grid.locate(lon, lat, pixel);
+      CellGeoTransform transform = grid.getGeoTransform(pixel.getCellIndex());
+      int[] offsets = new int[1];
+      transform.geoToPixelOffset(new double[]{lon}, new double[]{lat}, offsets);
+      assertEquals(pixel.getOffset(), offsets[0]);
+      double centerLon = transform.pixelToLon(pixel.getPixelX());
+      double centerLat = transform.pixelToLat(pixel.getPixelY());
+      assertEquals(pixel.getCellIndex(), grid.locate(centerLon, centerLat, new CellPixel()).getCellIndex());
+      assertEquals(pixel.getOffset(), grid.locate(centerLon, centerLat, new CellPixel()).getOffset());
+    }
+    CellGeoTransform transform = grid.getGeoTransform(grid.getCellIndex(-175, 85));
+    assertSame(transform, grid.getGeoTransform(transform.getCellIndex()));
+    double[] xs = {0, 39.5, 10};
+    double[] ys = {0, 39.5, 20};
+    double[] lons = new double[3];
+    double[] lats = new double[3];
+    transform.pixelToGeo(xs, ys, lons, lats);
+    assertArrayEquals(new double[]{-180, -170.125, -177.5}, lons, 1e-12);
+    assertArrayEquals(new double[]{90, 80.125, 85}, lats, 1e-12);
+    transform.geoToPixel(lons, lats, lons, lats);
+    assertArrayEquals(xs, lons, 1e-9);
+    assertArrayEquals(ys, lats, 1e-9);
+    assertEquals(-0.4, transform.lonToPixel(179.9), 1e-9);
+  }
+}
@@ -0,0 +1,87 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class PrefetchPlannerTest {
+
+  private static final GlobalGrid GRID = GlobalGrid.createImmutable(10, 10, 0.1, 60, -60);
+
+  @Test
+  void motionIsPlannedInOrderOfNeed() {
+    PrefetchPlanner planner = new PrefetchPlanner(GRID, 0, 0);
+    int[] plan = planner.planMotion(5, 5, 10, 0, 3);
+    int[] expected = {GRID.getCellIndex(5, 5), GRID.getCellIndex(15, 5), GRID.getCellIndex(25, 5),
+        GRID.getCellIndex(35, 5)};
+    assertArrayEquals(expected, Arrays.copyOf(plan, 4));
+    // the margin around the final position follows
+    assertEquals(4 + 7, plan.length);
+    assertTrue(Arrays.stream(plan).anyMatch(c -> c == GRID.getCellIndex(45, 15)));
+    assertEquals(plan.length, Arrays.stream(plan).distinct().count());
+  }
+
+  @Test
+  void diagonalPathCoversAllCrossedCells() {
+    PrefetchPlanner planner = new PrefetchPlanner(GRID, 0, 0);
+    double[] lons = {-0.5, 29.5};
+    double[] lats = {0.2, -29.8};
+    int[] plan = planner.planPath(lons, lats, new double[]{0, 1}, 1);
+    assertTrue(Arrays.stream(plan).anyMatch(c -> c == GRID.toCellIndex(-10, 0)));
+    assertTrue(Arrays.stream(plan).anyMatch(c -> c == GRID.toCellIndex(0, -10)));
+    // brute force: every cell hit by a dense sampling of the path must be planned
+    int samples = 100_000;
+    for (int s = 0; s <= samples; s++) {
+      double fraction = (double) s / samples;
+      int cell = GRID.getCellIndex(lons[0] + (lons[1] - lons[0]) * fraction, lats[0] + (lats[1] - lats[0]) * fraction);
+      assertTrue(Arrays.stream(plan).anyMatch(c -> c == cell), "cell " + GRID.toCellId(cell) + " is not planned");
+    }
+  }
+
+  @Test
+  void pathIsCutAtLeadTime() {
+    PrefetchPlanner planner = new PrefetchPlanner(GRID, 0, 0);
+    int[] plan = planner.planPath(new double[]{5, 45}, new double[]{5, 5}, new double[]{0, 4}, 2);
+    assertEquals(GRID.getCellIndex(25, 5), plan[2]);
+    assertTrue(Arrays.stream(plan).noneMatch(c -> c == GRID.getCellIndex(45, 5)));
+  }
+
+  @Test
+  void pathCrossingAntiMeridian() {
+    PrefetchPlanner planner = new PrefetchPlanner(GRID, 12, 0);
+    int[] plan = planner.planPath(new double[]{160, -170}, new double[]{5, 5}, new double[]{0, 1}, 1);
+    assertArrayEquals(new int[]{GRID.getCellIndex(155, 5), GRID.getCellIndex(165, 5), GRID.getCellIndex(175, 5),
+        GRID.getCellIndex(-175, 5), GRID.getCellIndex(-165, 5)}, Arrays.copyOf(plan, 5));
+  }
+
+  @Test
+  void motionBeyondGridBoundsIsClamped() {
+    PrefetchPlanner planner = new PrefetchPlanner(GRID, 5, 5);
+    int[] plan = planner.planMotion(0, -50, 0, -10, 5);
+    assertTrue(Arrays.stream(plan).anyMatch(c -> c == GRID.getCellIndex(0, -55)));
+    assertThrows(IllegalArgumentException.class,
+        () -> planner.planPath(new double[]{0, 1}, new double[]{0, 1}, new double[]{1, 0}, 1));
+  }
+}
@@ -0,0 +1,82 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SpaceFillingCurveTest {
+
+  @Test
+  void testHilbertOrderVisitsAdjacentCells() {
+    GlobalGrid grid = new GlobalGrid(45, 45, 0.1);
+    int[] cells = SpaceFillingCurve.HILBERT.getAllCellIndices(grid);
+    assertEquals(grid.getCellCount(), cells.length);
+    assertEquals(grid.getCellCount(), Arrays.stream(cells).distinct().count());
+    int numCols = grid.getColumnCount();
+    for (int i = 1; i < cells.length; i++) {
+      int rowDistance = Math.abs(cells[i] / numCols - cells[i - 1] / numCols);
+      int colDistance = Math.abs(cells[i] % numCols - cells[i - 1] % numCols);
+      assertEquals(1, rowDistance + colDistance);
+    }
+  }
+
+  @Test
+  void testHilbertOrderJumpsOnlyAtPadding() {
+    assertEquals(36, countHilbertJumps(new GlobalGrid(1, 1, 0.01)));
+    assertEquals(8, countHilbertJumps(new GlobalGrid(10, 10, 0.1)));
+  }
+
+  private static int countHilbertJumps(GlobalGrid grid) {
+    int[] cells = SpaceFillingCurve.HILBERT.getAllCellIndices(grid);
+    assertEquals(grid.getCellCount(), Arrays.stream(cells).distinct().count());
+    int numCols = grid.getColumnCount();
+    int jumps = 0;
+    for (int i = 1; i < cells.length; i++) {
+      int rowDistance = Math.abs(cells[i] / numCols - cells[i - 1] / numCols);
+      int colDistance = Math.abs(cells[i] % numCols - cells[i - 1] % numCols);
+      if (rowDistance + colDistance != 1) {
+        jumps++;
+      }
+    }
+    return jumps;
+  }
+
+  @Test
+  void testZOrderVisitsBlocks() {
+    GlobalGrid grid = new GlobalGrid(45, 45, 0.1);
+    int[] cells = SpaceFillingCurve.Z_ORDER.getAllCellIndices(grid);
+    assertArrayEquals(new int[]{0, 1, 8, 9, 2, 3, 10, 11}, Arrays.copyOf(cells, 8));
+  }
+
+  @Test
+  void testSortCellIds() {
+    GlobalGrid grid = new GlobalGrid(45, 45, 0.1);
+    List<Point> cellIds = new ArrayList<>(List.of(new Point(-90, 45), new Point(-135, 90), new Point(-180, 0),
+        new Point(-180, 90)));
+    SpaceFillingCurve.Z_ORDER.sort(grid, cellIds);
+    assertEquals(List.of(new Point(-180, 90), new Point(-135, 90), new Point(-90, 45), new Point(-180, 0)), cellIds);
+  }
+}
@@ -0,0 +1,88 @@
+/*-
+ * ========================LICENSE_START=================================
+ * EOM Commons - Library of common utilities for Java
+ * -> https://www.eomasters.org/
+ * ======================================================================
+ * Copyright (C) 2023 - 2024 Marco Peters
+ * ======================================================================
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * =========================LICENSE_END==================================
+ */
+
+
+package org.eomasters.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class ViewportTrackerTest {
+
+  @Test
+  void differencesMatchFullCoverage() {
+    GlobalGrid grid = new GlobalGrid(10, 10, 0.1);
+    ViewportTracker tracker = new ViewportTracker(grid);
+    Set<Integer> covered = new HashSet<>();
+    Random random = new Random(7);
+    for (int i = 0; i < 500; i++) {
+      double minX = random.nextDouble() * 360 - 180;
+      double maxX = minX + random.nextDouble() * (i % 50 == 0 ? 400 : 120);
+      double minY = random.nextDouble() * 150 - 90;
+      double maxY = Math.min(90, minY + random.nextDouble() * 60);
+      Set<Integer> added = new HashSet<>();
+      Set<Integer> removed = new HashSet<>();
+      tracker.update(minX, minY, maxX, maxY, c -> assertTrue(added.add(c)), c -> assertTrue(removed.add(c)));
+
+      Set<Integer> expected = new HashSet<>();
+      grid.getIntersectedCellIndices(minX, minY, maxX, maxY, expected::add);
+      Set<Integer> expectedAdded = new HashSet<>(expected);
+      expectedAdded.removeAll(covered);
+      Set<Integer> expectedRemoved = new HashSet<>(covered);
+      expectedRemoved.removeAll(expected);
+      assertEquals(expectedAdded, added);
+      assertEquals(expectedRemoved, removed);
+      assertEquals(expected.size(), tracker.getCoveredCellCount());
+      covered = expected;
+    }
+  }
+
+  @Test
+  void invertedViewportCoversNoCells() {
+    ViewportTracker tracker = new ViewportTracker(new GlobalGrid(3, 3, 0.01));
+    Set<Integer> added = new HashSet<>();
+    tracker.update(0, 0, 10, 10, added::add, c -> { });
+    Set<Integer> removed = new HashSet<>();
+    tracker.update(0, 10, 5, 5, c -> fail("no cell must be added"), removed::add);
+    assertEquals(0, tracker.getCoveredCellCount());
+    assertEquals(added, removed);
+  }
+
+  @Test
+  void panningReportsOnlyChangedCells() {
+    GlobalGrid grid = new GlobalGrid(10, 10, 0.1);
+    ViewportTracker tracker = new ViewportTracker(grid);
+    Set<Integer> added = new HashSet<>();
+    Set<Integer> removed = new HashSet<>();
+    tracker.update(160, 1, 175, 9, added::add, removed::add);
+    assertEquals(2, added.size());
+    added.clear();
+    tracker.update(171, 1, -175, 9, added::add, removed::add);
+    assertEquals(Set.of(grid.getCellIndex(-175, 5)), added);
+    assertEquals(Set.of(grid.getCellIndex(165, 5)), removed);
+    removed.clear();
+    tracker.reset(removed::add);
+    assertEquals(2, removed.size());
+    assertEquals(0, tracker.getCoveredCellCount());
+  }
+}